@@ -27,7 +27,6 @@ package de.s42.dl.netbeans.editing;
 
 import de.s42.dl.DLModule;
 import de.s42.dl.core.BaseDLCore;
-import de.s42.dl.core.DefaultCore;
 import de.s42.dl.exceptions.DLException;
 import de.s42.dl.netbeans.DLDataObject;
 import javax.swing.Action;
@@ -53,6 +52,7 @@ import javax.swing.Box;
 import javax.swing.ListCellRenderer;
 import javax.swing.SwingUtilities;
 import org.netbeans.api.editor.mimelookup.MimeLookup;
+import de.s42.dl.netbeans.util.DLCoreHelper;
 import de.s42.dl.netbeans.util.FileObjectHelper;
 import de.s42.dl.ui.visual.VisualDLEditor;
 import java.nio.file.Path;
@@ -102,13 +102,7 @@ public final class DLEditorPanel extends JPanel implements MultiViewElement
 		if (optVisualRequire.isPresent()) {
 
 			// Parse the visual require
-			BaseDLCore core = new BaseDLCore(true);
-			DefaultCore.loadResolvers(core);
-			DefaultCore.loadAnnotations(core);
-			DefaultCore.loadPragmas(core);
-			DefaultCore.loadTypes(core);
-			DefaultCore.loadExports(core);
-			core.getPathResolver().addResolveDirectory(fileObjectPath.getParent());
+			BaseDLCore core = DLCoreHelper.createModuleCore(fileObjectPath.getParent());
 			DLModule visualRequireModule = core.parse(optVisualRequire.orElseThrow().toString());
 
 			// If visual require contains at least one VisuaDLEditor instance
@@ -0,0 +1,123 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.editing;
+
+import de.s42.dl.netbeans.util.DLLargeFiles;
+import java.awt.BorderLayout;
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.Document;
+import javax.swing.text.JTextComponent;
+import org.netbeans.editor.SideBarFactory;
+import org.openide.util.NbBundle;
+import org.openide.util.WeakListeners;
+
+/**
+ * Banner above the editor which tells that the file is in large file mode (see DLLargeFiles). It is registered in the
+ * layer.xml.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLLargeFileSideBar extends JPanel implements DocumentListener
+{
+
+	protected final static String MESSAGE = NbBundle.getMessage(DLLargeFileSideBar.class, "DLLargeFileSideBar.message");
+
+	protected final Document document;
+
+	// Checks are coalesced as a paste fires many events
+	protected boolean updatePending;
+
+	public DLLargeFileSideBar(JTextComponent target)
+	{
+		super(new BorderLayout());
+
+		assert target != null;
+
+		document = target.getDocument();
+
+		JLabel label = new JLabel(MESSAGE);
+		label.setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+		add(label, BorderLayout.CENTER);
+		setBackground(UIManager.getColor("info"));
+
+		update();
+		document.addDocumentListener(WeakListeners.document(this, document));
+	}
+
+	protected final void update()
+	{
+		updatePending = false;
+		setVisible(DLLargeFiles.isLargeFile(document));
+		revalidate();
+	}
+
+	protected void scheduleUpdate()
+	{
+		if (updatePending) {
+			return;
+		}
+
+		updatePending = true;
+		SwingUtilities.invokeLater(this::update);
+	}
+
+	@Override
+	public void insertUpdate(DocumentEvent e)
+	{
+		scheduleUpdate();
+	}
+
+	@Override
+	public void removeUpdate(DocumentEvent e)
+	{
+		scheduleUpdate();
+	}
+
+	@Override
+	public void changedUpdate(DocumentEvent e)
+	{
+		// do nothing
+	}
+
+	public static class Factory implements SideBarFactory
+	{
+
+		@Override
+		public JComponent createSideBar(JTextComponent target)
+		{
+			assert target != null;
+
+			return new DLLargeFileSideBar(target);
+		}
+	}
+}
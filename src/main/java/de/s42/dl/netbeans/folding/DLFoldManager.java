@@ -26,6 +26,7 @@
 package de.s42.dl.netbeans.folding;
 
 import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.netbeans.util.DLLargeFiles;
 import de.s42.dl.netbeans.util.FileObjectHelper;
 import de.s42.dl.parser.DLLexer;
 import de.s42.log.LogManager;
@@ -39,8 +40,8 @@ import java.util.Map;
 import java.util.Stack;
 import javax.swing.event.DocumentEvent;
 import javax.swing.text.BadLocationException;
+import org.antlr.v4.runtime.BufferedTokenStream;
 import org.antlr.v4.runtime.Token;
-import org.antlr.v4.runtime.TokenStream;
 import org.netbeans.api.editor.fold.Fold;
 import org.netbeans.api.editor.fold.FoldUtilities;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
@@ -191,7 +192,20 @@ public class DLFoldManager implements FoldManager
 	{
 		List<DLFoldInfo> result = new ArrayList<>();
 		Stack<Integer> openedScopes = new Stack();
-		TokenStream tokens = FileObjectHelper.getDLTokenStream(FileObjectHelper.getText(getDocument()));
+		BaseDocument document = getDocument();
+		BufferedTokenStream tokens;
+		boolean scopesOnly;
+
+		// Reuse the tokens of the token hierarchy which is updated before the folds
+		document.readLock();
+		try {
+			// Comment folds need the token texts -> large files just get scope folds
+			scopesOnly = DLLargeFiles.isLargeFile(document);
+			tokens = FileObjectHelper.getDLTokenStream(document);
+			tokens.fill();
+		} finally {
+			document.readUnlock();
+		}
 
 		int activeSingleCommentCollapseStart = 0;
 		String activeSingleCommentCollapseInfo = null;
@@ -216,7 +230,7 @@ public class DLFoldManager implements FoldManager
 					result.add(new DLFoldInfo(foldInfo));
 				}
 			} // Add fold for multiline comments /**^ Display ... */
-			else if (token.getType() == DLLexer.MULTILINE_COMMENT) {
+			else if (!scopesOnly && token.getType() == DLLexer.MULTILINE_COMMENT) {
 
 				String commentText = token.getText();
 				boolean collapsed = commentText.startsWith(COMMENT_COLLAPSE_PREFIX);
@@ -240,7 +254,7 @@ public class DLFoldManager implements FoldManager
 					.collapsed((collapsed) ? isFoldCollapsed(description) : false);
 				result.add(new DLFoldInfo(foldInfo));
 			} // Allows //^ Display ... //^ Region collapses
-			else if (token.getType() == DLLexer.SINGLELINE_COMMENT) {
+			else if (!scopesOnly && token.getType() == DLLexer.SINGLELINE_COMMENT) {
 
 				String commentText = token.getText();
 
@@ -30,9 +30,11 @@ import de.s42.dl.parser.DLLexer;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
 import javax.swing.text.BadLocationException;
+import org.antlr.v4.runtime.BufferedTokenStream;
 import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.TokenStream;
 import org.netbeans.editor.BaseDocument;
+import org.netbeans.editor.Utilities;
 import org.netbeans.modules.editor.indent.api.IndentUtils;
 import org.netbeans.modules.editor.indent.spi.Context;
 import org.netbeans.modules.editor.indent.spi.Context.Region;
@@ -70,7 +72,7 @@ public class DLIndenter
 	}
 
 	/**
-	 * Reindents the given range. It spools the tokens from beginning to that point.
+	 * Reindents the given range. It spools the tokens from beginning to the end of its last line.
 	 *
 	 * @todo might get optimized by reusing tokenstream from last region before if used in multiregion call (observed
 	 * calls were not)
@@ -88,9 +90,12 @@ public class DLIndenter
 		//log.debug("reindentRegion", startIndex, endIndex);
 
 		BaseDocument document = getDocument();
-		String text = FileObjectHelper.getText(document);
 		int indentLevel = IndentUtils.indentLevelSize(document);
-		TokenStream tokens = FileObjectHelper.getDLTokenStream(text);
+
+		// Copy the tokens up to the end of the last indented line upfront as modifying the indents invalidates the hierarchy
+		// The tokens before the region are still needed for the scope depth but the rest of the document is not read
+		BufferedTokenStream tokens = FileObjectHelper.getDLTokenStream(document, Utilities.getRowEnd(document, endIndex));
+		tokens.fill();
 
 		// Iterate tokens from lexer
 		boolean justNewline = true;
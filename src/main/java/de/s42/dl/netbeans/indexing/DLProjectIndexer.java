@@ -0,0 +1,334 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.indexing;
+
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.language.DLFileType;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCache;
+import de.s42.dl.netbeans.syntax.DLSyntaxParser;
+import de.s42.dl.netbeans.util.DLPreferences;
+import de.s42.dl.netbeans.util.FileObjectHelper;
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+import org.netbeans.api.progress.ProgressHandle;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ProjectUtils;
+import org.netbeans.api.queries.VisibilityQuery;
+import org.openide.filesystems.FileObject;
+import org.openide.util.Cancellable;
+import org.openide.util.NbBundle.Messages;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Parses all DL files of opened projects in the background into the semantic cache. The auto require files are parsed
+ * first as nearly every other module requires them. Then the other files follow grouped by their resolve directory.
+ * Modules which are cached already are skipped. Indexed modules are just registered in the cache, so queries over all
+ * modules include them without parsing or decoding them up front.
+ *
+ * @author Benjamin Schiller
+ */
+@Messages({
+	"# {0} - project name",
+	"LBL_DLIndexing=Indexing DL files of {0}"
+})
+public final class DLProjectIndexer
+{
+
+	private final static Logger log = LogManager.getLogger(DLProjectIndexer.class.getName());
+
+	private final static DLSemanticCache CACHE = MimeLookup.getLookup(DL_MIME_TYPE).lookup(DLSemanticCache.class);
+
+	public final static int MAX_DEPTH = 100;
+
+	// Coordinates the runs - one project after the other
+	private final static RequestProcessor COORDINATOR = new RequestProcessor(DLProjectIndexer.class.getName(), 1, true);
+
+	private final static int PARSER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+	// Parses the modules of a run in parallel
+	private final static RequestProcessor PARSERS = new RequestProcessor(DLProjectIndexer.class.getName() + ".parsers", PARSER_THREADS, true);
+
+	// Runs by project directory - kept until the project gets closed to not index it again
+	private final static Map<FileObject, IndexingRun> RUNS = new ConcurrentHashMap<>();
+
+	protected static class IndexingRun implements Cancellable
+	{
+
+		protected final Project project;
+		protected final AtomicBoolean cancelled = new AtomicBoolean();
+		protected final List<RequestProcessor.Task> tasks = new ArrayList<>();
+
+		protected IndexingRun(Project project)
+		{
+			assert project != null;
+
+			this.project = project;
+		}
+
+		@Override
+		public boolean cancel()
+		{
+			log.debug("cancel", project.getProjectDirectory().getPath());
+
+			cancelled.set(true);
+
+			synchronized (tasks) {
+				for (RequestProcessor.Task task : tasks) {
+					task.cancel();
+				}
+			}
+
+			return true;
+		}
+	}
+
+	private DLProjectIndexer()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * Schedules the indexing of the DL files of the project if it has not been indexed since it got opened
+	 *
+	 * @param project
+	 */
+	public static void index(Project project)
+	{
+		assert project != null;
+
+		IndexingRun run = new IndexingRun(project);
+
+		if (RUNS.putIfAbsent(project.getProjectDirectory(), run) != null) {
+			return;
+		}
+
+		COORDINATOR.post(() -> run(run), 0, Thread.MIN_PRIORITY);
+	}
+
+	/**
+	 * Cancels the indexing of the project and forgets it so it gets indexed again when it is opened again
+	 *
+	 * @param project
+	 */
+	public static void cancel(Project project)
+	{
+		assert project != null;
+
+		IndexingRun run = RUNS.remove(project.getProjectDirectory());
+
+		if (run != null) {
+			run.cancel();
+		}
+	}
+
+	protected static void run(IndexingRun run)
+	{
+		assert run != null;
+
+		if (run.cancelled.get()) {
+			return;
+		}
+
+		String projectName = ProjectUtils.getInformation(run.project).getDisplayName();
+		ProgressHandle handle = ProgressHandle.createHandle(Bundle.LBL_DLIndexing(projectName), run);
+
+		log.start("DLProjectIndexer.run");
+
+		try {
+			handle.start();
+
+			List<FileObject> files = findModuleFiles(run.project.getProjectDirectory(), run.cancelled);
+
+			// The auto require files are required by nearly all other modules -> parse them first
+			Set<String> autoRequireIds = new LinkedHashSet<>();
+			for (FileObject file : files) {
+				FileObjectHelper.resolveAutoRequireDl(file)
+					.ifPresent((path) -> autoRequireIds.add(path.toAbsolutePath().normalize().toString()));
+			}
+
+			// Group the other modules by their resolve directory
+			List<String> moduleIds = new ArrayList<>();
+			for (FileObject file : files) {
+				String moduleId = Path.of(file.getPath()).toAbsolutePath().normalize().toString();
+				if (!autoRequireIds.contains(moduleId)) {
+					moduleIds.add(moduleId);
+				}
+			}
+			moduleIds.sort(Comparator.comparing((String moduleId) -> Path.of(moduleId).getParent().toString()));
+
+			AtomicInteger done = new AtomicInteger();
+			int total = autoRequireIds.size() + moduleIds.size();
+
+			handle.switchToDeterminate(total);
+
+			parseModules(run, new ArrayList<>(autoRequireIds), handle, done);
+			parseModules(run, moduleIds, handle, done);
+
+			log.debug("run", projectName, total, run.cancelled.get() ? "cancelled" : "done");
+		} finally {
+			handle.finish();
+			log.stopDebug("DLProjectIndexer.run");
+		}
+	}
+
+	/**
+	 * Parses the given modules in parallel and waits until all are done. Modules which are cached or indexed already are
+	 * skipped. The modules are parsed in batches which fit into the cache - after each batch the index gets written, so
+	 * evicting the nodes of the run does not lose them and shared requires are loaded from the index again.
+	 *
+	 * @param run
+	 * @param moduleIds
+	 * @param handle
+	 * @param done
+	 */
+	protected static void parseModules(IndexingRun run, List<String> moduleIds, ProgressHandle handle, AtomicInteger done)
+	{
+		assert run != null;
+		assert moduleIds != null;
+		assert handle != null;
+		assert done != null;
+
+		List<RequestProcessor.Task> batch = new ArrayList<>();
+		int batchSize = 0;
+
+		for (String moduleId : moduleIds) {
+
+			if (run.cancelled.get()) {
+				break;
+			}
+
+			String key = DLSemanticCache.getCacheKey(moduleId);
+
+			// Indexed modules are just registered - they get decoded on demand
+			if (CACHE.hasCacheNode(key) || CACHE.registerIndexed(key)) {
+				handle.progress(Path.of(moduleId).getFileName().toString(), done.incrementAndGet());
+				continue;
+			}
+
+			// Batch is full -> wait for it and write its nodes before they might get evicted
+			if (batch.size() >= batchSize) {
+				waitFinished(batch);
+				batch.clear();
+				CACHE.flushIndex();
+				batchSize = Math.max(PARSER_THREADS, DLPreferences.getCacheMaxNodes() - CACHE.getCacheNodeCount());
+			}
+
+			synchronized (run.tasks) {
+
+				if (run.cancelled.get()) {
+					break;
+				}
+
+				RequestProcessor.Task task = PARSERS.post(() -> {
+
+					// Might have been parsed meanwhile as require of another module
+					if (!run.cancelled.get() && !CACHE.hasCacheNode(key)) {
+						DLSyntaxParser.rebuildCacheNode(moduleId, run.cancelled);
+					}
+
+					handle.progress(Path.of(moduleId).getFileName().toString(), done.incrementAndGet());
+				}, 0, Thread.MIN_PRIORITY);
+
+				batch.add(task);
+				run.tasks.add(task);
+			}
+		}
+
+		waitFinished(batch);
+
+		synchronized (run.tasks) {
+			run.tasks.clear();
+		}
+	}
+
+	protected static void waitFinished(List<RequestProcessor.Task> tasks)
+	{
+		assert tasks != null;
+
+		for (RequestProcessor.Task task : tasks) {
+			task.waitFinished();
+		}
+	}
+
+	/**
+	 * Collects all visible DL files below the root
+	 *
+	 * @param root
+	 * @param cancelled
+	 *
+	 * @return
+	 */
+	protected static List<FileObject> findModuleFiles(FileObject root, AtomicBoolean cancelled)
+	{
+		assert root != null;
+		assert cancelled != null;
+
+		List<FileObject> result = new ArrayList<>();
+
+		Deque<FileObject> open = new ArrayDeque<>();
+		Deque<Integer> depths = new ArrayDeque<>();
+		open.push(root);
+		depths.push(0);
+
+		while (!open.isEmpty() && !cancelled.get()) {
+
+			FileObject folder = open.pop();
+			int depth = depths.pop();
+
+			for (FileObject child : folder.getChildren()) {
+
+				// Skip ignored files like build output or VCS folders
+				if (!VisibilityQuery.getDefault().isVisible(child)) {
+					continue;
+				}
+
+				if (child.isFolder()) {
+					if (depth < MAX_DEPTH) {
+						open.push(child);
+						depths.push(depth + 1);
+					}
+				} else if (DLFileType.HRF_EXTENSION.equalsIgnoreCase(child.getExt())) {
+					result.add(child);
+				}
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,92 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.indexing;
+
+import de.s42.dl.netbeans.util.DLPreferences;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.netbeans.api.project.Project;
+import org.netbeans.api.project.ui.OpenProjects;
+import org.openide.modules.OnStart;
+
+/**
+ * Starts the background indexing of projects when they get opened and cancels it when they get closed
+ *
+ * @author Benjamin Schiller
+ */
+@OnStart
+public final class DLProjectIndexerStartup implements Runnable, PropertyChangeListener
+{
+
+	@Override
+	public void run()
+	{
+		if (!DLPreferences.isIndexerEnabled()) {
+			return;
+		}
+
+		OpenProjects.getDefault().addPropertyChangeListener(this);
+
+		for (Project project : OpenProjects.getDefault().getOpenProjects()) {
+			DLProjectIndexer.index(project);
+		}
+	}
+
+	@Override
+	public void propertyChange(PropertyChangeEvent evt)
+	{
+		if (!OpenProjects.PROPERTY_OPEN_PROJECTS.equals(evt.getPropertyName())) {
+			return;
+		}
+
+		Set<Project> oldProjects = toSet(evt.getOldValue());
+		Set<Project> newProjects = toSet(evt.getNewValue());
+
+		for (Project project : oldProjects) {
+			if (!newProjects.contains(project)) {
+				DLProjectIndexer.cancel(project);
+			}
+		}
+
+		for (Project project : newProjects) {
+			if (!oldProjects.contains(project)) {
+				DLProjectIndexer.index(project);
+			}
+		}
+	}
+
+	protected static Set<Project> toSet(Object projects)
+	{
+		if (!(projects instanceof Project[])) {
+			return new HashSet<>();
+		}
+
+		return new HashSet<>(Arrays.asList((Project[]) projects));
+	}
+}
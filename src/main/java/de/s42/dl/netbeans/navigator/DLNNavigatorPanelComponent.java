@@ -27,6 +27,7 @@ package de.s42.dl.netbeans.navigator;
 
 import de.s42.dl.netbeans.navigator.nodes.ResultNode;
 import de.s42.dl.netbeans.navigator.nodes.ModuleNode;
+import static de.s42.dl.netbeans.navigator.nodes.LargeFileNode.getLargeFileNode;
 import static de.s42.dl.netbeans.navigator.nodes.WaitNode.getWaitNode;
 import de.s42.dl.netbeans.syntax.DLParserResult;
 import de.s42.log.LogManager;
@@ -96,6 +97,14 @@ public class DLNNavigatorPanelComponent extends JPanel implements ExplorerManage
 		});
 	}
 
+	public void showLargeFileNode()
+	{
+		SwingUtilities.invokeLater(() -> {
+			elementView.setRootVisible(true);
+			manager.setRootContext(getLargeFileNode());
+		});
+	}
+
 	private MyBeanTreeView createBeanTreeView()
 	{
 		return new MyBeanTreeView();
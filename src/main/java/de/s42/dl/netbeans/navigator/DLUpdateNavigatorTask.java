@@ -27,6 +27,7 @@ package de.s42.dl.netbeans.navigator;
 
 import de.s42.dl.netbeans.syntax.*;
 import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.netbeans.util.DLLargeFiles;
 import java.util.Collection;
 import java.util.Collections;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
@@ -45,6 +46,7 @@ public class DLUpdateNavigatorTask extends ParserResultTask<DLParserResult>
 {
 
 	protected final DLNNavigatorPanelComponent navigatorPanel;
+	protected volatile boolean cancelled;
 
 	public DLUpdateNavigatorTask()
 	{
@@ -58,6 +60,19 @@ public class DLUpdateNavigatorTask extends ParserResultTask<DLParserResult>
 	{
 		assert result != null;
 
+		cancelled = false;
+
+		// Results of cancelled parses are incomplete and outdated
+		if (result.isCancelled()) {
+			return;
+		}
+
+		// The tree of a large file would freeze the navigator
+		if (DLLargeFiles.isLargeFile(result.getSnapshot())) {
+			navigatorPanel.showLargeFileNode();
+			return;
+		}
+
 		navigatorPanel.setParserResult(result);
 	}
 
@@ -76,6 +91,7 @@ public class DLUpdateNavigatorTask extends ParserResultTask<DLParserResult>
 	@Override
 	public void cancel()
 	{
+		cancelled = true;
 	}
 
 	@MimeRegistration(mimeType = DL_MIME_TYPE, service = TaskFactory.class)
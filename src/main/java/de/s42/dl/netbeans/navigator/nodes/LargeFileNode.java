@@ -0,0 +1,63 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.navigator.nodes;
+
+import de.s42.dl.netbeans.navigator.DLNavigatorPanel;
+import org.openide.nodes.AbstractNode;
+import org.openide.nodes.Children;
+import org.openide.util.NbBundle;
+
+/**
+ * Shown instead of the module tree for files in large file mode
+ *
+ * @author Benjamin Schiller
+ */
+public class LargeFileNode extends AbstractNode
+{
+
+	private static LargeFileNode LARGE_FILE_NODE;
+
+	public static synchronized LargeFileNode getLargeFileNode()
+	{
+		if (LARGE_FILE_NODE == null) {
+			LARGE_FILE_NODE = new LargeFileNode();
+		}
+		return LARGE_FILE_NODE;
+	}
+
+	public LargeFileNode()
+	{
+		super(Children.LEAF);
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	@Override
+	public String getHtmlDisplayName()
+	{
+		return NbBundle.getMessage(DLNavigatorPanel.class, "LBL_LargeFileNode"); // NOI18N
+	}
+	//</editor-fold>
+}
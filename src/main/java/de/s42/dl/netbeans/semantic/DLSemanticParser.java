@@ -45,9 +45,11 @@ import java.io.IOException;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.netbeans.api.editor.mimelookup.MimeLookup;
 import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.netbeans.util.DLCoreHelper;
 import de.s42.dl.netbeans.util.FileObjectHelper;
 
 /**
@@ -65,22 +67,43 @@ public class DLSemanticParser extends DLParserBaseListener
 	protected final BaseDLCore core;
 	protected final String moduleId;
 	protected final DLSemanticCacheNode cacheNode;
+	protected final boolean partial;
 
 	public DLSemanticParser(DLParserResult parserResult, BaseDLCore core, String moduleId)
+	{
+		// This cache node will be filled while not being in the cache directly -> after scannning the whole document it will be published
+		this(parserResult, core, moduleId, CACHE.createCacheNode(DLSemanticCache.getCacheKey(moduleId), new ModuleEntry(moduleId)), false);
+	}
+
+	/**
+	 * Creates a semantic parser which fills the given cache node.
+	 *
+	 * @param parserResult
+	 * @param core
+	 * @param moduleId
+	 * @param cacheNode
+	 * @param partial if true just a part of the module gets parsed into an already prefilled node - the auto require is
+	 * not loaded and the node is not published after parsing
+	 */
+	public DLSemanticParser(DLParserResult parserResult, BaseDLCore core, String moduleId, DLSemanticCacheNode cacheNode, boolean partial)
 	{
 		assert parserResult != null;
 		assert core != null;
 		assert moduleId != null;
+		assert cacheNode != null;
 
 		this.core = core;
 		this.moduleId = moduleId;
 		this.parserResult = parserResult;
+		this.cacheNode = cacheNode;
+		this.partial = partial;
+	}
 
-		String cacheKey = DLSemanticCache.getCacheKey(moduleId);
-		ModuleEntry module = new ModuleEntry(moduleId);
-
-		// This cache node will be filled while not being in the cache directly -> after scannning the whole document it will be published
-		cacheNode = CACHE.createCacheNode(cacheKey, module);
+	@Override
+	public void enterEveryRule(ParserRuleContext ctx)
+	{
+		// Stop working on outdated content as fast as possible
+		parserResult.checkCancelled();
 	}
 
 	@Override
@@ -88,6 +111,10 @@ public class DLSemanticParser extends DLParserBaseListener
 	{
 		assert ctx != null;
 
+		if (partial) {
+			return;
+		}
+
 		// Load a nb-project.dl if given
 		FileObjectHelper.resolveAutoRequireDl(Path.of(moduleId))
 			.ifPresent((path) -> {
@@ -98,6 +125,10 @@ public class DLSemanticParser extends DLParserBaseListener
 	@Override
 	public void exitData(DataContext ctx)
 	{
+		if (partial) {
+			return;
+		}
+
 		// After successful parsing -> Update cache node
 		CACHE.setCacheNode(cacheNode);
 	}
@@ -215,10 +246,16 @@ public class DLSemanticParser extends DLParserBaseListener
 
 		String typeName = ctx.getText();
 
+		Optional<Type> optType = cacheNode.findType(typeName, ctx.getStart().getStartIndex(), true);
+
 		// Warning: Type must be defined in this context
-		if (!cacheNode.hasType(typeName, ctx.getStart().getStartIndex(), true)) {
+		if (optType.isEmpty()) {
 			parserResult.addWarning("Type " + typeName + " is not defined", ctx);
+			return;
 		}
+
+		// Remember the usage of the resolved type for find usages and rename
+		cacheNode.addTypeUsage(new TypeUsage(optType.orElseThrow(), ctx, moduleId));
 	}
 
 	protected Type addTypeDefinition(ParserRuleContext context, boolean warnOnLowerCase, Type aliasOf)
@@ -302,29 +339,38 @@ public class DLSemanticParser extends DLParserBaseListener
 
 			String resolvedModuleId = resolver.resolveModuleId(core, moduleId);
 
-			// Just immediately parse the required module if it has not been parsed already
-			if (!CACHE.hasCacheNode(resolvedModuleId)) {
-
-				String content = resolver.getContent(core, resolvedModuleId, null);
-				DLParserResult result = new DLParserResult(parserResult.getSnapshot());
-
-				// Add dir mapping before parsing if it is a file resolver (mimics file resolver strat)
-				if (resolver instanceof FileCoreResolver) {
-					Path modulePath = Path.of(resolvedModuleId);
-					core.getPathResolver().addResolveDirectory(modulePath.getParent());
-				}
-
-				DLSyntaxParser.parseContent(
-					result,
-					resolvedModuleId,
-					content,
-					core
-				);
-
-				// Remove mapping again after parsing
-				if (resolver instanceof FileCoreResolver) {
-					Path modulePath = Path.of(resolvedModuleId);
-					core.getPathResolver().removeResolveDirectory(modulePath.getParent());
+			// Just immediately parse the required module if it has not been parsed already or can be loaded from the index
+			// Parses requiring the same module concurrently wait for this one
+			Optional<DLSemanticCache.CacheNodeLoad> optLoad = CACHE.beginLoad(resolvedModuleId);
+			if (optLoad.isPresent()) {
+
+				try {
+					// Do not start loading another module for outdated content
+					parserResult.checkCancelled();
+
+					String content = resolver.getContent(core, resolvedModuleId, null);
+					DLParserResult result = new DLParserResult(parserResult);
+
+					// Add dir mapping before parsing if it is a file resolver (mimics file resolver strat)
+					if (resolver instanceof FileCoreResolver) {
+						Path modulePath = Path.of(resolvedModuleId);
+						DLCoreHelper.addResolveDirectory(core, modulePath.getParent());
+					}
+
+					DLSyntaxParser.parseContent(
+						result,
+						resolvedModuleId,
+						content,
+						core
+					);
+
+					// Remove mapping again after parsing
+					if (resolver instanceof FileCoreResolver) {
+						Path modulePath = Path.of(resolvedModuleId);
+						DLCoreHelper.removeResolveDirectory(core, modulePath.getParent());
+					}
+				} finally {
+					optLoad.orElseThrow().finish();
 				}
 			}
 
@@ -344,6 +390,11 @@ public class DLSemanticParser extends DLParserBaseListener
 		return true;
 	}
 
+	public DLSemanticCacheNode getCacheNode()
+	{
+		return cacheNode;
+	}
+
 	protected void requireModule(String requiredModuleId, ParserRuleContext locationContext)
 	{
 		assert requiredModuleId != null;
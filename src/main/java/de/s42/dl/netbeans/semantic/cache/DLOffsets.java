@@ -0,0 +1,70 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+/**
+ * Helpers for entries kept in the order of their end offset
+ *
+ * @author Benjamin Schiller
+ */
+final class DLOffsets
+{
+
+	private DLOffsets()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * Returns how many entries are visible at the caret offset - all entries ending before or at it. As the end
+	 * offsets are sorted the visible entries are the first ones.
+	 *
+	 * @param sortedEndOffsets ascending end offsets
+	 * @param caretOffset
+	 *
+	 * @return
+	 */
+	static int countVisible(int[] sortedEndOffsets, int caretOffset)
+	{
+		assert sortedEndOffsets != null;
+
+		int low = 0;
+		int high = sortedEndOffsets.length;
+
+		while (low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if (sortedEndOffsets[middle] <= caretOffset) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
@@ -0,0 +1,70 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheModule.NodeReference;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The references of a node sorted by their end offset. The references in scope at a caret are a prefix of this order.
+ *
+ * @author Benjamin Schiller
+ */
+class DLReferenceIndex
+{
+
+	protected final String[] keys;
+	protected final int[] endOffsets;
+
+	DLReferenceIndex(Collection<NodeReference> references)
+	{
+		assert references != null;
+
+		NodeReference[] sortedReferences = references.toArray(NodeReference[]::new);
+		Arrays.sort(sortedReferences, Comparator.comparingInt((reference) -> reference.endOffset));
+
+		keys = new String[sortedReferences.length];
+		endOffsets = new int[sortedReferences.length];
+
+		for (int i = 0; i < sortedReferences.length; ++i) {
+			keys[i] = sortedReferences[i].key;
+			endOffsets[i] = sortedReferences[i].endOffset;
+		}
+	}
+
+	/**
+	 * @param caretOffset
+	 *
+	 * @return the keys of the references which end before or at the caret offset
+	 */
+	List<String> getVisibleKeys(int caretOffset)
+	{
+		return Arrays.asList(keys).subList(0, DLOffsets.countVisible(endOffsets, caretOffset));
+	}
+}
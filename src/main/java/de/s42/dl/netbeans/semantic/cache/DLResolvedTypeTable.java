@@ -0,0 +1,110 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.model.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * All types visible from a node at the end of its document - its own types and the types of all nodes it requires
+ * directly or indirectly. Valid as long as the cache generation it got resolved in is current.
+ *
+ * @author Benjamin Schiller
+ */
+class DLResolvedTypeTable
+{
+
+	protected final long generation;
+	protected final Set<Type> types = new HashSet<>();
+	protected final Map<String, Type> typesByIdentifier = new HashMap<>();
+	protected volatile DLTypePrefixIndex prefixIndex;
+
+	DLResolvedTypeTable(long generation)
+	{
+		this.generation = generation;
+	}
+
+	void addTypes(Collection<Type> newTypes)
+	{
+		assert newTypes != null;
+
+		for (Type type : newTypes) {
+			types.add(type);
+			typesByIdentifier.putIfAbsent(type.getIdentifier(), type);
+		}
+	}
+
+	void addTypes(DLResolvedTypeTable other)
+	{
+		assert other != null;
+
+		addTypes(other.types);
+	}
+
+	Type getType(String identifier)
+	{
+		assert identifier != null;
+
+		return typesByIdentifier.get(identifier);
+	}
+
+	boolean hasType(String identifier)
+	{
+		assert identifier != null;
+
+		return typesByIdentifier.containsKey(identifier);
+	}
+
+	DLTypePrefixIndex getPrefixIndex()
+	{
+		DLTypePrefixIndex index = prefixIndex;
+
+		// Concurrent readers might build it twice but never lock
+		if (index == null) {
+			index = new DLTypePrefixIndex(types);
+			prefixIndex = index;
+		}
+
+		return index;
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	long getGeneration()
+	{
+		return generation;
+	}
+
+	Set<Type> getTypes()
+	{
+		return Collections.unmodifiableSet(types);
+	}
+	//</editor-fold>
+}
@@ -27,20 +27,45 @@ package de.s42.dl.netbeans.semantic.cache;
 
 import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
 import de.s42.dl.netbeans.semantic.model.ModuleEntry;
+import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.semantic.model.TypeUsage;
 import de.s42.dl.netbeans.syntax.DLParserResult;
+import de.s42.dl.netbeans.util.DLPreferences;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
+import java.io.File;
+import java.lang.ref.SoftReference;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import javax.swing.text.Document;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.modules.parsing.api.Snapshot;
 import org.netbeans.modules.parsing.api.Source;
+import org.openide.cookies.EditorCookie;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileEvent;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileRenameEvent;
+import org.openide.filesystems.FileUtil;
+import org.openide.loaders.DataObject;
+import org.openide.loaders.DataObjectNotFoundException;
+import org.openide.util.RequestProcessor;
 
 /**
  *
@@ -53,7 +78,130 @@ public class DLSemanticCache
 
 	private final static Logger log = LogManager.getLogger(DLSemanticCache.class.getName());
 
-	protected final Map<String, DLSemanticCacheNode> nodesByKey = Collections.synchronizedMap(new HashMap<>());
+	public final static double EVICTION_RATIO = 0.9;
+
+	// Loads evicted nodes in the background
+	protected final static RequestProcessor PREFETCHER = new RequestProcessor(DLSemanticCache.class.getName() + ".prefetch", 1, false, false);
+
+	// Read without locking - all writes are guarded by evictionOrder
+	protected final Map<String, DLSemanticCacheNode> nodesByKey = new ConcurrentHashMap<>();
+
+	// Keys of nodesByKey in publish order - the eviction clock hand starts at the first one
+	protected final LinkedHashSet<String> evictionOrder = new LinkedHashSet<>();
+
+	// Keys accessed since the clock hand passed them - they get a second chance on eviction
+	protected final Set<String> accessedKeys = ConcurrentHashMap.newKeySet();
+
+	// Changes whenever a node is published or removed - resolved type tables of other generations are outdated
+	protected final AtomicLong generation = new AtomicLong();
+
+	// Evicted nodes which are kept until the memory is needed
+	protected final Map<String, SoftReference<DLSemanticCacheNode>> softNodesByKey = new ConcurrentHashMap<>();
+
+	// Keys of nodes which are not held but known - evicted ones and indexed ones which were never loaded
+	protected final Set<String> evictedKeys = ConcurrentHashMap.newKeySet();
+
+	// Keys which are currently scheduled for prefetching
+	protected final Set<String> prefetchingKeys = ConcurrentHashMap.newKeySet();
+
+	// Running loads by key and the key each loading thread waits for - to load each node once without deadlocks
+	protected final Map<String, CacheNodeLoad> loadsByKey = new ConcurrentHashMap<>();
+	protected final Map<Thread, String> waitingKeysByThread = new ConcurrentHashMap<>();
+
+	// Parses a module by its key and publishes its node (see setNodeBuilder)
+	protected volatile Consumer<String> nodeBuilder;
+
+	// Pinned keys by owner (i.e. the parsers of open documents) which are never evicted
+	protected final Map<Object, Set<String>> pinnedKeysByOwner = new ConcurrentHashMap<>();
+
+	// Reverse require graph - key -> keys of the nodes referencing it
+	protected final Map<String, Set<String>> dependentsByKey = new ConcurrentHashMap<>();
+
+	protected final Map<String, ModuleFileListener> fileListenersByKey = new ConcurrentHashMap<>();
+
+	protected final List<DLSemanticCacheListener> listeners = new CopyOnWriteArrayList<>();
+
+	// Persists the nodes for fast loading after a restart
+	protected final DLSemanticIndex index = new DLSemanticIndex(this);
+
+	/**
+	 * Load of a node by one thread which other threads needing the node wait for (see beginLoad)
+	 */
+	public class CacheNodeLoad
+	{
+
+		protected final String key;
+		protected final Thread owner;
+		protected final CountDownLatch done = new CountDownLatch(1);
+
+		protected CacheNodeLoad(String key, Thread owner)
+		{
+			assert key != null;
+			assert owner != null;
+
+			this.key = key;
+			this.owner = owner;
+		}
+
+		protected void await() throws InterruptedException
+		{
+			done.await();
+		}
+
+		/**
+		 * Has to be called by the owner after the node got published or could not be built
+		 */
+		public void finish()
+		{
+			loadsByKey.remove(key, this);
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Invalidates a cached module and its dependents if its file changes on disk
+	 */
+	protected class ModuleFileListener extends FileChangeAdapter
+	{
+
+		protected final String key;
+		protected final File file;
+
+		protected ModuleFileListener(String key, File file)
+		{
+			assert key != null;
+			assert file != null;
+
+			this.key = key;
+			this.file = file;
+		}
+
+		@Override
+		public void fileChanged(FileEvent fe)
+		{
+			// The node of an open document is built from the editor content - saving it does not make it stale and an
+			// external change reloads the document which triggers a reparse anyway
+			// The saved content is on disk now -> index the node with the stamp of the saved file
+			if (isOpenInEditor(fe.getFile())) {
+				peekCacheNode(key).ifPresent(index::updateSaved);
+				return;
+			}
+
+			invalidate(key);
+		}
+
+		@Override
+		public void fileDeleted(FileEvent fe)
+		{
+			invalidate(key);
+		}
+
+		@Override
+		public void fileRenamed(FileRenameEvent fe)
+		{
+			invalidate(key);
+		}
+	}
 
 	// <editor-fold desc="public static String getCacheKey(<params>)" defaultstate="collapsed">
 	public static String getCacheKey(String moduleId)
@@ -113,14 +261,458 @@ public class DLSemanticCache
 	{
 		assert key != null;
 
-		return nodesByKey.containsKey(key);
+		return peekCacheNode(key).isPresent();
 	}
 
+	/**
+	 * Registers the key of a node which can be loaded from the persistent index without decoding or publishing it. The
+	 * node is then treated like an evicted one - queries covering all known nodes (i.e. findUsages) include it and it
+	 * gets loaded on demand.
+	 *
+	 * @param key
+	 *
+	 * @return false if there is no valid index record for the key
+	 */
+	public boolean registerIndexed(String key)
+	{
+		assert key != null;
+
+		if (!index.isIndexed(key)) {
+			return false;
+		}
+
+		if (!nodesByKey.containsKey(key)) {
+			evictedKeys.add(key);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Writes the pending nodes into the persistent index so they can be evicted without losing them
+	 */
+	public void flushIndex()
+	{
+		index.flush();
+	}
+
+	public int getCacheNodeCount()
+	{
+		return nodesByKey.size();
+	}
+
+	/**
+	 * Returns the node for the given key. Evicted nodes are taken back from the soft tier. Nodes of unchanged modules
+	 * are loaded from the persistent index. Does not parse - other evicted nodes are just prefetched in the background
+	 * and the call returns empty. Use loadCacheNode if the node is needed.
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
 	public Optional<DLSemanticCacheNode> getCacheNode(String key)
 	{
 		assert key != null;
 
-		return Optional.ofNullable(nodesByKey.get(key));
+		Optional<DLSemanticCacheNode> optNode = findCacheNode(key);
+
+		if (optNode.isEmpty() && evictedKeys.contains(key)) {
+			prefetchCacheNode(key);
+		}
+
+		return optNode;
+	}
+
+	/**
+	 * Returns the node for the given key like getCacheNode but parses evicted nodes again on the calling thread. Each
+	 * node is loaded once - concurrent calls for the same key wait for the first one.
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public Optional<DLSemanticCacheNode> loadCacheNode(String key)
+	{
+		assert key != null;
+
+		Consumer<String> builder = nodeBuilder;
+
+		// Just nodes which got evicted are parsed again - others could not be parsed or are not required anymore
+		if (builder == null || !evictedKeys.contains(key)) {
+			return findCacheNode(key);
+		}
+
+		Optional<CacheNodeLoad> optLoad = beginLoad(key);
+
+		if (optLoad.isPresent()) {
+			try {
+				log.debug("loadCacheNode", "Rebuilding", key);
+				builder.accept(key);
+			} finally {
+				optLoad.orElseThrow().finish();
+			}
+		}
+
+		return peekCacheNode(key);
+	}
+
+	/**
+	 * Starts loading the node for the given key unless it is available. If another thread loads it already, waits for
+	 * it. The caller has to build and publish the node if a load is returned and has to finish it in any case.
+	 *
+	 * @param key
+	 *
+	 * @return empty if the node got available, is loaded by another thread or is loaded up the stack already
+	 */
+	public Optional<CacheNodeLoad> beginLoad(String key)
+	{
+		assert key != null;
+
+		Thread current = Thread.currentThread();
+
+		while (findCacheNode(key).isEmpty()) {
+
+			CacheNodeLoad load = new CacheNodeLoad(key, current);
+			CacheNodeLoad running = loadsByKey.putIfAbsent(key, load);
+
+			if (running == null) {
+
+				// Might have been published between the lookup and registering the load
+				if (peekCacheNode(key).isPresent()) {
+					load.finish();
+					return Optional.empty();
+				}
+
+				return Optional.of(load);
+			}
+
+			// Modules requiring each other would wait for each other forever
+			waitingKeysByThread.put(current, key);
+			try {
+				if (isWaitingForItself(running)) {
+					log.debug("beginLoad", "Require cycle", key);
+					return Optional.empty();
+				}
+
+				running.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return Optional.empty();
+			} finally {
+				waitingKeysByThread.remove(current);
+			}
+
+			// The other load published it or failed (i.e. got cancelled) -> try again
+		}
+
+		return Optional.empty();
+	}
+
+	protected boolean isWaitingForItself(CacheNodeLoad load)
+	{
+		assert load != null;
+
+		Thread current = Thread.currentThread();
+		Set<Thread> visited = new HashSet<>();
+		CacheNodeLoad next = load;
+
+		while (next != null && visited.add(next.owner)) {
+
+			if (next.owner == current) {
+				return true;
+			}
+
+			String waitingKey = waitingKeysByThread.get(next.owner);
+			next = (waitingKey != null) ? loadsByKey.get(waitingKey) : null;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Looks the node up in the strong and soft tier and in the index without parsing
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	protected Optional<DLSemanticCacheNode> findCacheNode(String key)
+	{
+		assert key != null;
+
+		DLSemanticCacheNode node = nodesByKey.get(key);
+
+		if (node != null) {
+			markAccessed(key);
+			return Optional.of(node);
+		}
+
+		// Take back from soft tier
+		node = getSoftNode(key);
+		if (node != null) {
+			log.debug("findCacheNode", "Restored from soft tier", key);
+			restoreCacheNode(node);
+			return Optional.of(node);
+		}
+
+		// Load unchanged modules from the index instead of parsing them
+		Optional<DLSemanticCacheNode> optIndexed = index.load(key);
+		if (optIndexed.isPresent()) {
+			restoreCacheNode(optIndexed.orElseThrow());
+			return optIndexed;
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * Sets the access bit of the key without locking - hot keys do not write at all as the bit is set already
+	 *
+	 * @param key
+	 */
+	protected void markAccessed(String key)
+	{
+		assert key != null;
+
+		if (!accessedKeys.contains(key)) {
+			accessedKeys.add(key);
+		}
+	}
+
+	/**
+	 * Loads an evicted node in the background so it is available on the next request
+	 *
+	 * @param key
+	 */
+	protected void prefetchCacheNode(String key)
+	{
+		assert key != null;
+
+		if (nodeBuilder == null || !prefetchingKeys.add(key)) {
+			return;
+		}
+
+		PREFETCHER.post(() -> {
+			try {
+				loadCacheNode(key);
+			} finally {
+				prefetchingKeys.remove(key);
+			}
+		});
+	}
+
+	/**
+	 * Returns the node for the given key if it is available without rebuilding it and without changing its eviction
+	 * order.
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public Optional<DLSemanticCacheNode> peekCacheNode(String key)
+	{
+		assert key != null;
+
+		DLSemanticCacheNode node = nodesByKey.get(key);
+
+		if (node != null) {
+			return Optional.of(node);
+		}
+
+		return Optional.ofNullable(getSoftNode(key));
+	}
+
+	/**
+	 * Pins the given keys for the owner. Pinned nodes are never evicted. Replaces the keys pinned before by this owner.
+	 *
+	 * @param owner
+	 * @param keys
+	 */
+	public void pin(Object owner, Set<String> keys)
+	{
+		assert owner != null;
+		assert keys != null;
+
+		pinnedKeysByOwner.put(owner, new HashSet<>(keys));
+	}
+
+	public void unpin(Object owner)
+	{
+		assert owner != null;
+
+		pinnedKeysByOwner.remove(owner);
+	}
+
+	public boolean isPinned(String key)
+	{
+		assert key != null;
+
+		for (Set<String> pinnedKeys : pinnedKeysByOwner.values()) {
+			if (pinnedKeys.contains(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Evicts nodes which are not pinned if there are more than the configured maximum of nodes. Approximates LRU by a
+	 * clock - nodes accessed since the hand passed them get a second chance. Evicts down to EVICTION_RATIO of the
+	 * maximum to not run for every new node.
+	 *
+	 * @param keepKey key of the node which shall not be evicted
+	 */
+	protected void evict(String keepKey)
+	{
+		int maxNodes = DLPreferences.getCacheMaxNodes();
+
+		if (nodesByKey.size() <= maxNodes) {
+			return;
+		}
+
+		boolean softReferences = DLPreferences.isCacheSoftReferences();
+		int targetNodes = Math.max(1, (int) (maxNodes * EVICTION_RATIO));
+
+		Set<String> pinnedKeys = new HashSet<>();
+		for (Set<String> keys : pinnedKeysByOwner.values()) {
+			pinnedKeys.addAll(keys);
+		}
+
+		synchronized (evictionOrder) {
+
+			List<String> skippedKeys = new ArrayList<>();
+			int secondChances = evictionOrder.size();
+
+			while (nodesByKey.size() > targetNodes && !evictionOrder.isEmpty()) {
+
+				String key = evictionOrder.iterator().next();
+				evictionOrder.remove(key);
+
+				if (key.equals(keepKey) || pinnedKeys.contains(key)) {
+					skippedKeys.add(key);
+					continue;
+				}
+
+				// Accessed since the last pass -> move behind the hand
+				if (secondChances > 0 && accessedKeys.remove(key)) {
+					secondChances--;
+					evictionOrder.add(key);
+					continue;
+				}
+
+				log.debug("evict", key);
+
+				DLSemanticCacheNode node = nodesByKey.remove(key);
+
+				if (node == null) {
+					continue;
+				}
+
+				if (softReferences) {
+					softNodesByKey.put(key, new SoftReference<>(node));
+				}
+				evictedKeys.add(key);
+
+				// The index holds the node until it is written -> do not wait for the delay of a parsing burst
+				index.evicted(key);
+			}
+
+			evictionOrder.addAll(skippedKeys);
+		}
+	}
+
+	protected DLSemanticCacheNode putCacheNode(DLSemanticCacheNode node)
+	{
+		assert node != null;
+
+		String key = node.getKey();
+
+		synchronized (evictionOrder) {
+			evictionOrder.remove(key);
+			evictionOrder.add(key);
+			return nodesByKey.put(key, node);
+		}
+	}
+
+	/**
+	 * Takes back a node from the soft tier or the index. Its content did not change since it got evicted or indexed, so
+	 * the resolved type tables stay valid and no listeners are notified.
+	 *
+	 * @param node
+	 */
+	protected void restoreCacheNode(DLSemanticCacheNode node)
+	{
+		assert node != null;
+
+		String key = node.getKey();
+
+		node.freeze();
+		softNodesByKey.remove(key);
+		evictedKeys.remove(key);
+		putCacheNode(node);
+
+		// Nodes loaded from the index after a restart are not part of the require graph yet
+		for (String referencedKey : node.getReferencedKeys()) {
+			dependentsByKey.computeIfAbsent(referencedKey, (k) -> ConcurrentHashMap.newKeySet()).add(key);
+		}
+		watchModuleFile(key);
+
+		evict(key);
+	}
+
+	protected DLSemanticCacheNode getSoftNode(String key)
+	{
+		assert key != null;
+
+		SoftReference<DLSemanticCacheNode> reference = softNodesByKey.get(key);
+
+		if (reference == null) {
+			return null;
+		}
+
+		DLSemanticCacheNode node = reference.get();
+
+		// Got collected -> can just get rebuilt
+		if (node == null) {
+			softNodesByKey.remove(key, reference);
+		}
+
+		return node;
+	}
+
+	/**
+	 * Returns the keys of all nodes which are referenced by the given node directly or indirectly. Keys of nodes which
+	 * are not cached are contained but not followed.
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public Set<String> getTransitiveReferencedKeys(String key)
+	{
+		assert key != null;
+
+		Set<String> result = new LinkedHashSet<>();
+		Deque<String> open = new ArrayDeque<>();
+		open.push(key);
+
+		while (!open.isEmpty()) {
+
+			Optional<DLSemanticCacheNode> optNode = peekCacheNode(open.pop());
+
+			if (optNode.isEmpty()) {
+				continue;
+			}
+
+			for (String referencedKey : optNode.orElseThrow().getReferencedKeys()) {
+				if (!referencedKey.equals(key) && result.add(referencedKey)) {
+					open.push(referencedKey);
+				}
+			}
+		}
+
+		return result;
 	}
 
 	public DLSemanticCacheNode setCacheNode(DLSemanticCacheNode node)
@@ -129,6 +721,309 @@ public class DLSemanticCache
 
 		log.debug("setCacheNode", node);
 
-		return nodesByKey.put(node.getKey(), node);
+		// Published nodes are immutable snapshots
+		node.freeze();
+
+		String key = node.getKey();
+		DLSemanticCacheNode previous = putCacheNode(node);
+
+		// A node evicted before is the previous one as well
+		if (previous == null) {
+			previous = getSoftNode(key);
+		}
+
+		boolean typesChanged = previous != null && previous != node && !getTypeNames(previous).equals(getTypeNames(node));
+
+		// Rebuilt after eviction from the unchanged file -> the tables resolved with the former node stay valid
+		boolean rebuilt = evictedKeys.remove(key);
+
+		// Resolved type tables just contain referenced nodes -> a new node nothing references yet does not outdate them
+		Set<String> directDependents = dependentsByKey.get(key);
+		if (rebuilt ? typesChanged : (previous != null || (directDependents != null && !directDependents.isEmpty()))) {
+			generation.incrementAndGet();
+		}
+		softNodesByKey.remove(key);
+
+		// Update the reverse require graph
+		if (previous != null) {
+			removeDependent(previous);
+		}
+		for (String referencedKey : node.getReferencedKeys()) {
+			dependentsByKey.computeIfAbsent(referencedKey, (k) -> ConcurrentHashMap.newKeySet()).add(key);
+		}
+
+		watchModuleFile(key);
+
+		index.update(node);
+
+		evict(key);
+
+		// Modules requiring this one might now find other types
+		if (typesChanged) {
+			Set<String> dependents = getTransitiveDependentKeys(key);
+			if (!dependents.isEmpty()) {
+				fireNodesInvalidated(dependents);
+			}
+		}
+
+		return previous;
+	}
+
+	/**
+	 * Removes the node with the given key and all nodes depending on it directly or indirectly from the cache and
+	 * notifies the listeners about the dependent nodes.
+	 *
+	 * @param key
+	 */
+	public void invalidate(String key)
+	{
+		assert key != null;
+
+		Set<String> dependentKeys = getTransitiveDependentKeys(key);
+
+		log.debug("invalidate", key, dependentKeys.size());
+
+		removeCacheNode(key);
+		for (String dependentKey : dependentKeys) {
+			removeCacheNode(dependentKey);
+		}
+
+		if (!dependentKeys.isEmpty()) {
+			fireNodesInvalidated(dependentKeys);
+		}
+	}
+
+	protected static boolean isOpenInEditor(FileObject fileObject)
+	{
+		assert fileObject != null;
+
+		try {
+			EditorCookie editorCookie = DataObject.find(fileObject).getLookup().lookup(EditorCookie.class);
+
+			return editorCookie != null && editorCookie.getDocument() != null;
+		} catch (DataObjectNotFoundException ex) {
+			return false;
+		}
+	}
+
+	public Optional<DLSemanticCacheNode> removeCacheNode(String key)
+	{
+		assert key != null;
+
+		DLSemanticCacheNode node;
+		synchronized (evictionOrder) {
+			evictionOrder.remove(key);
+			node = nodesByKey.remove(key);
+		}
+		accessedKeys.remove(key);
+
+		if (node == null) {
+			node = getSoftNode(key);
+		}
+		softNodesByKey.remove(key);
+		evictedKeys.remove(key);
+
+		if (node != null) {
+			removeDependent(node);
+			generation.incrementAndGet();
+		}
+
+		ModuleFileListener fileListener = fileListenersByKey.remove(key);
+		if (fileListener != null) {
+			FileUtil.removeFileChangeListener(fileListener, fileListener.file);
+		}
+
+		return Optional.ofNullable(node);
+	}
+
+	/**
+	 * Returns the keys of all nodes which reference the given node directly or indirectly
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public Set<String> getTransitiveDependentKeys(String key)
+	{
+		assert key != null;
+
+		Set<String> result = new LinkedHashSet<>();
+		Deque<String> open = new ArrayDeque<>();
+		open.push(key);
+
+		while (!open.isEmpty()) {
+
+			Set<String> dependents = dependentsByKey.get(open.pop());
+
+			if (dependents == null) {
+				continue;
+			}
+
+			for (String dependentKey : dependents) {
+				if (!dependentKey.equals(key) && result.add(dependentKey)) {
+					open.push(dependentKey);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Sets the function which parses a module by its key and publishes its node. It is used to load evicted nodes again.
+	 * Without it evicted nodes are just available again once their module got parsed otherwise.
+	 *
+	 * @param nodeBuilder
+	 */
+	public void setNodeBuilder(Consumer<String> nodeBuilder)
+	{
+		this.nodeBuilder = nodeBuilder;
+	}
+
+	public void addCacheListener(DLSemanticCacheListener listener)
+	{
+		assert listener != null;
+
+		listeners.add(listener);
+	}
+
+	public void removeCacheListener(DLSemanticCacheListener listener)
+	{
+		assert listener != null;
+
+		listeners.remove(listener);
+	}
+
+	protected void fireNodesInvalidated(Set<String> keys)
+	{
+		assert keys != null;
+
+		Set<String> unmodifiableKeys = Collections.unmodifiableSet(keys);
+
+		for (DLSemanticCacheListener listener : listeners) {
+			listener.nodesInvalidated(unmodifiableKeys);
+		}
+	}
+
+	protected void removeDependent(DLSemanticCacheNode node)
+	{
+		assert node != null;
+
+		for (String referencedKey : node.getReferencedKeys()) {
+			Set<String> dependents = dependentsByKey.get(referencedKey);
+			if (dependents != null) {
+				dependents.remove(node.getKey());
+			}
+		}
+	}
+
+	protected void watchModuleFile(String key)
+	{
+		assert key != null;
+
+		if (fileListenersByKey.containsKey(key)) {
+			return;
+		}
+
+		File file = new File(key);
+
+		// Just modules loaded from files can be watched
+		if (!file.isFile()) {
+			return;
+		}
+
+		ModuleFileListener fileListener = new ModuleFileListener(key, file);
+
+		if (fileListenersByKey.putIfAbsent(key, fileListener) == null) {
+			FileUtil.addFileChangeListener(fileListener, file);
+		}
+	}
+
+	/**
+	 * Returns all usages of the given type in the known modules. The background indexer caches or registers the modules
+	 * of the open projects, evicted and registered modules are read from the soft tier or decoded from the persistent
+	 * index. The query does not change the cache - evicted modules which are not indexed are skipped instead of being
+	 * parsed again.
+	 *
+	 * @param type
+	 *
+	 * @return
+	 */
+	public List<TypeUsage> findUsages(Type type)
+	{
+		assert type != null;
+
+		Set<String> keys = new HashSet<>(nodesByKey.keySet());
+		keys.addAll(softNodesByKey.keySet());
+		keys.addAll(evictedKeys);
+
+		List<TypeUsage> result = new ArrayList<>();
+
+		for (String key : keys) {
+
+			// Do not publish, touch or rebuild nodes just for a query - evicted ones are just decoded from the index
+			Optional<DLSemanticCacheNode> optNode = peekCacheNode(key);
+
+			if (optNode.isEmpty()) {
+				optNode = index.load(key);
+			}
+
+			if (optNode.isEmpty()) {
+				continue;
+			}
+
+			for (TypeUsage usage : optNode.orElseThrow().getTypeUsages(type.getIdentifier())) {
+				if (usage.isUsageOf(type)) {
+					result.add(usage);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Estimates the heap bytes per type held by the strongly cached nodes. Strings shared between types are just
+	 * counted once.
+	 *
+	 * @return the average estimated bytes per type or 0 if there are no types
+	 */
+	public long estimateHeapBytesPerType()
+	{
+		List<DLSemanticCacheNode> nodes = new ArrayList<>(nodesByKey.values());
+
+		Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+		long bytes = 0;
+		long count = 0;
+
+		for (DLSemanticCacheNode node : nodes) {
+			for (Type type : node.getTypes(false)) {
+				bytes += type.estimateHeapSize(counted);
+				count++;
+			}
+		}
+
+		return (count > 0) ? bytes / count : 0;
+	}
+
+	/**
+	 * @return the current generation of the cache which changes whenever a node is published or removed
+	 */
+	public long getGeneration()
+	{
+		return generation.get();
+	}
+
+	protected static Set<String> getTypeNames(DLSemanticCacheNode node)
+	{
+		assert node != null;
+
+		Set<String> typeNames = new HashSet<>();
+
+		for (Type type : node.getTypes(false)) {
+			typeNames.add(type.getIdentifier());
+		}
+
+		return typeNames;
 	}
 }
@@ -28,11 +28,20 @@ package de.s42.dl.netbeans.semantic.cache;
 import de.s42.dl.netbeans.semantic.model.Entry;
 import de.s42.dl.netbeans.semantic.model.ModuleEntry;
 import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.semantic.model.TypeUsage;
+import de.s42.dl.netbeans.syntax.DLSourceEdit;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -51,8 +60,27 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 	protected final ModuleEntry module;
 	protected final String key;
 	protected final DLSemanticCache cache;
-	protected final Map<String, Type> types = Collections.synchronizedMap(new HashMap<>());
-	protected final Set<NodeReference> references = Collections.synchronizedSet(new HashSet<>());
+
+	// Modification stamp and size of the module file when this node got created from its content - -1 if not a file
+	protected final long sourceStamp;
+	protected final long sourceSize;
+
+	// Filled privately by one parser and replaced by immutable copies on freeze
+	protected Map<String, Type> types = new HashMap<>();
+	protected Set<NodeReference> references = new HashSet<>();
+	protected Map<String, List<TypeUsage>> usagesByIdentifier = new HashMap<>();
+
+	// Set once the node got published - from then on it is never modified again
+	protected volatile boolean frozen;
+
+	// Built on the first query after the types changed or on freeze
+	protected DLTypePrefixIndex prefixIndex;
+
+	// References in the order of their end offset - built on the first query after the references changed or on freeze
+	protected DLReferenceIndex referenceIndex;
+
+	// Types visible at the end of this node including all requires
+	protected volatile DLResolvedTypeTable resolvedTypes;
 
 	protected static class NodeReference
 	{
@@ -101,6 +129,11 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 		this.module = module;
 		this.key = key;
 		this.cache = cache;
+
+		// The content gets read right before the node is created - a later change of the file makes this node stale
+		Optional<BasicFileAttributes> optAttributes = DLSemanticIndex.readAttributes(key);
+		sourceStamp = optAttributes.map((attributes) -> attributes.lastModifiedTime().toMillis()).orElse(-1L);
+		sourceSize = optAttributes.map(BasicFileAttributes::size).orElse(-1L);
 	}
 
 	@Override
@@ -108,6 +141,11 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 	{
 		assert type != null;
 
+		checkNotFrozen();
+
+		prefixIndex = null;
+		resolvedTypes = null;
+
 		return types.putIfAbsent(type.getIdentifier(), type) == null;
 	}
 	
@@ -119,7 +157,7 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 		NodeReference reference = new NodeReference();
 		reference.key = key;
 		
-		return references.add(reference);
+		return addNodeReference(reference);
 	}
 
 	@Override
@@ -138,69 +176,119 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 		reference.endOffset = locationContext.getStop().getStopIndex() + 1;
 		reference.endPosition = locationContext.getStop().getCharPositionInLine() + 1 + reference.endOffset - reference.startOffset;
 		
+		return addNodeReference(reference);
+	}
+
+	protected boolean addNodeReference(NodeReference reference)
+	{
+		assert reference != null;
+
+		checkNotFrozen();
+
+		referenceIndex = null;
+		resolvedTypes = null;
+
 		return references.add(reference);
 	}
 	
 	@Override
 	public boolean hasType(String typeName, int caretOffset, boolean resolveReferences)
 	{
+		return findType(typeName, caretOffset, resolveReferences).isPresent();
+	}
+
+	@Override
+	public Optional<Type> findType(String typeName, int caretOffset, boolean resolveReferences)
+	{
+		assert typeName != null;
+
 		Type type = types.get(typeName);
 
 		if (type != null && isEntryVisible(type, caretOffset)) {
-			return true;
+			return Optional.of(type);
 		}
 
 		if (!resolveReferences) {
-			return false;
+			return Optional.empty();
+		}
+
+		// Everything is visible at the end -> just one probe into the resolved table
+		if (caretOffset == Integer.MAX_VALUE) {
+			return Optional.ofNullable(getResolvedTypes().getType(typeName));
 		}
 
 		// Resolve all references which are already in scope at caret position
-		for (NodeReference reference : references) {
+		for (DLSemanticCacheNode node : getReferencedNodes(caretOffset)) {
 
-			if (reference.endOffset > caretOffset) {
-				continue;
-			}
+			if (node instanceof DLSemanticCacheModule) {
 
-			Optional<DLSemanticCacheNode> optNode = cache.getCacheNode(reference.key);
+				type = ((DLSemanticCacheModule) node).getResolvedTypes().getType(typeName);
 
-			if (optNode.isEmpty()) {
-				continue;
-			}
+				if (type != null) {
+					return Optional.of(type);
+				}
+			} // The MAX_VALUE makes sure you get the complete results of that node
+			else {
 
-			// The MAX_VALUE makes sure you get the complete results of that node
-			if (optNode.orElseThrow().hasType(typeName, Integer.MAX_VALUE, true)) {
-				return true;
+				Optional<Type> optType = node.findType(typeName, Integer.MAX_VALUE, true);
+
+				if (optType.isPresent()) {
+					return optType;
+				}
 			}
 		}
 
-		return false;
+		return Optional.empty();
 	}
 
 	@Override
-	public Set<Type> getTypes(boolean resolveReferences)
+	public boolean addTypeUsage(TypeUsage usage)
 	{
-		HashSet<Type> result = new HashSet<>(types.values());
+		assert usage != null;
 
-		if (!resolveReferences) {
-			return result;
+		checkNotFrozen();
+
+		return usagesByIdentifier.computeIfAbsent(usage.getIdentifier(), (identifier) -> new ArrayList<>()).add(usage);
+	}
+
+	@Override
+	public List<TypeUsage> getTypeUsages(String identifier)
+	{
+		assert identifier != null;
+
+		List<TypeUsage> usages = usagesByIdentifier.get(identifier);
+
+		if (usages == null) {
+			return Collections.emptyList();
 		}
 
-		for (NodeReference reference : references) {
+		return Collections.unmodifiableList(usages);
+	}
 
-			Optional<DLSemanticCacheNode> optNode = cache.getCacheNode(reference.key);
+	@Override
+	public Set<Type> getTypes(boolean resolveReferences)
+	{
+		if (!resolveReferences) {
+			return new HashSet<>(types.values());
+		}
 
-			if (optNode.isEmpty()) {
-				continue;
-			}
+		return new HashSet<>(getResolvedTypes().getTypes());
+	}
+
+	@Override
+	public Set<String> getReferencedKeys()
+	{
+		Set<String> result = new HashSet<>();
 
-			result.addAll(optNode.orElseThrow().getTypes(true));
+		for (NodeReference reference : references) {
+			result.add(reference.key);
 		}
 
 		return result;
 	}
 
 	/**
-	 * A query is a case independent start with in this case
+	 * A query is a case independent start with
 	 * @param query
 	 * @param caretOffset
 	 * @param resolveReferences
@@ -209,38 +297,260 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 	@Override
 	public Set<Type> findTypes(String query, int caretOffset, boolean resolveReferences)
 	{
-		String queryLowerCase = query.toLowerCase();
-		HashSet<Type> result = new HashSet<>(types.values().stream().filter((type) -> {
-			return // Empty filter or match start case independent
-				(query.isBlank() || type.getIdentifier().toLowerCase().startsWith(queryLowerCase))
-				// End of type location before caret offset
-				&& isEntryVisible(type, caretOffset);
-		}).toList());
+		assert query != null;
+
+		// An empty filter matches all types
+		String lowerCasePrefix = query.isBlank() ? "" : query.toLowerCase();
+
+		Set<Type> result = new HashSet<>();
 
 		if (!resolveReferences) {
+			getPrefixIndex().findTypes(lowerCasePrefix, caretOffset, result);
+			return result;
+		}
+
+		// Everything is visible at the end -> just one lookup in the resolved table
+		if (caretOffset == Integer.MAX_VALUE) {
+			getResolvedTypes().getPrefixIndex().findTypes(lowerCasePrefix, caretOffset, result);
 			return result;
 		}
 
+		getPrefixIndex().findTypes(lowerCasePrefix, caretOffset, result);
+
 		// Resolve all references which are already in scope at caret position
-		for (NodeReference reference : references) {
+		for (DLSemanticCacheNode node : getReferencedNodes(caretOffset)) {
 
-			if (reference.endOffset > caretOffset) {
-				continue;
+			if (node instanceof DLSemanticCacheModule) {
+				((DLSemanticCacheModule) node).getResolvedTypes().getPrefixIndex().findTypes(lowerCasePrefix, Integer.MAX_VALUE, result);
+			} // The MAX_VALUE makes sure you get the complete results of that node
+			else {
+				result.addAll(node.findTypes(query, Integer.MAX_VALUE, true));
 			}
+		}
+
+		return result;
+	}
 
-			Optional<DLSemanticCacheNode> optNode = cache.getCacheNode(reference.key);
+	/**
+	 * Returns the nodes referenced before the caret offset
+	 *
+	 * @param caretOffset
+	 *
+	 * @return
+	 */
+	protected List<DLSemanticCacheNode> getReferencedNodes(int caretOffset)
+	{
+		List<String> keys = getReferenceIndex().getVisibleKeys(caretOffset);
 
-			if (optNode.isEmpty()) {
-				continue;
-			}
+		List<DLSemanticCacheNode> result = new ArrayList<>(keys.size());
 
-			// The MAX_VALUE makes sure you get the complete results of that node
-			result.addAll(optNode.orElseThrow().findTypes(query, Integer.MAX_VALUE, true));
+		for (String referencedKey : keys) {
+			cache.loadCacheNode(referencedKey).ifPresent(result::add);
 		}
 
 		return result;
 	}
-	
+
+	/**
+	 * Returns the types visible at the end of this node. The table is resolved once per cache generation. Each node of
+	 * the require graph is visited once, so diamonds are not walked repeatedly and cycles terminate. Valid tables of
+	 * referenced nodes are merged instead of walking their requires again.
+	 *
+	 * @return
+	 */
+	protected DLResolvedTypeTable getResolvedTypes()
+	{
+		long generation = cache.getGeneration();
+		DLResolvedTypeTable table = resolvedTypes;
+
+		if (table != null && table.getGeneration() == generation) {
+			return table;
+		}
+
+		table = new DLResolvedTypeTable(generation);
+
+		Set<String> visitedKeys = new HashSet<>();
+		visitedKeys.add(key);
+
+		Deque<DLSemanticCacheNode> open = new ArrayDeque<>();
+		open.push(this);
+
+		while (!open.isEmpty()) {
+
+			DLSemanticCacheNode node = open.pop();
+
+			if (node != this && node instanceof DLSemanticCacheModule) {
+
+				DLResolvedTypeTable other = ((DLSemanticCacheModule) node).resolvedTypes;
+
+				if (other != null && other.getGeneration() == generation) {
+					table.addTypes(other);
+					continue;
+				}
+			}
+
+			table.addTypes(node.getTypes(false));
+
+			for (String referencedKey : node.getReferencedKeys()) {
+				if (visitedKeys.add(referencedKey)) {
+					cache.loadCacheNode(referencedKey).ifPresent(open::push);
+				}
+			}
+		}
+
+		resolvedTypes = table;
+
+		return table;
+	}
+
+	protected DLReferenceIndex getReferenceIndex()
+	{
+		DLReferenceIndex index = referenceIndex;
+
+		if (index == null) {
+			index = new DLReferenceIndex(references);
+			referenceIndex = index;
+		}
+
+		return index;
+	}
+
+	protected DLTypePrefixIndex getPrefixIndex()
+	{
+		DLTypePrefixIndex index = prefixIndex;
+
+		if (index == null) {
+			index = new DLTypePrefixIndex(types.values());
+			prefixIndex = index;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Replaces the collections by immutable copies and builds the indices. Called by the cache right before the node
+	 * gets published. Readers of published nodes then never have to lock.
+	 */
+	@Override
+	public void freeze()
+	{
+		if (frozen) {
+			return;
+		}
+
+		types = Map.copyOf(types);
+		references = Set.copyOf(references);
+
+		Map<String, List<TypeUsage>> frozenUsages = new HashMap<>();
+		for (Map.Entry<String, List<TypeUsage>> entry : usagesByIdentifier.entrySet()) {
+			frozenUsages.put(entry.getKey(), List.copyOf(entry.getValue()));
+		}
+		usagesByIdentifier = Map.copyOf(frozenUsages);
+
+		prefixIndex = new DLTypePrefixIndex(types.values());
+		referenceIndex = new DLReferenceIndex(references);
+
+		// The volatile write publishes all of the above
+		frozen = true;
+	}
+
+	protected void checkNotFrozen()
+	{
+		if (frozen) {
+			throw new IllegalStateException("Cache node " + key + " is published and can not be modified");
+		}
+	}
+
+	@Override
+	public void copyUnchangedTypes(DLSemanticCacheNode target, DLSourceEdit edit, boolean behindRegion)
+	{
+		assert target != null;
+		assert edit != null;
+
+		// Copy in document order to make sure alias targets are copied before their aliases
+		List<Type> sortedTypes = new ArrayList<>(types.values());
+		sortedTypes.sort(Comparator.comparingInt(Type::getStartOffset));
+
+		Map<Type, Type> copies = new IdentityHashMap<>();
+
+		for (Type type : sortedTypes) {
+
+			if (!behindRegion) {
+				if (edit.isBefore(type.getStartOffset(), type.getEndOffset())) {
+					target.addType(type);
+				}
+			} else if (edit.isBehind(type.getStartOffset(), type.getEndOffset())) {
+
+				Type aliasOf = type.getAliasOf();
+				Type copy = type.copy(copies.getOrDefault(aliasOf, aliasOf));
+				moveEntry(copy, edit);
+				copies.put(type, copy);
+				target.addType(copy);
+			}
+		}
+	}
+
+	@Override
+	public void copyUnchangedReferences(DLSemanticCacheNode target, DLSourceEdit edit)
+	{
+		assert target instanceof DLSemanticCacheModule;
+		assert edit != null;
+
+		DLSemanticCacheModule targetModule = (DLSemanticCacheModule) target;
+
+		for (NodeReference reference : references) {
+
+			if (edit.isBefore(reference.startOffset, reference.endOffset)) {
+				targetModule.addNodeReference(reference);
+			} else if (edit.isBehind(reference.startOffset, reference.endOffset)) {
+
+				NodeReference copy = new NodeReference();
+				copy.key = reference.key;
+				copy.startLine = edit.shiftLine(reference.startLine);
+				copy.startPosition = edit.shiftPosition(reference.startLine, reference.startPosition);
+				copy.startOffset = edit.shiftOffset(reference.startOffset);
+				copy.endLine = edit.shiftLine(reference.endLine);
+				copy.endPosition = edit.shiftPosition(reference.endLine, reference.endPosition);
+				copy.endOffset = edit.shiftOffset(reference.endOffset);
+				targetModule.addNodeReference(copy);
+			}
+		}
+	}
+
+	@Override
+	public void copyUnchangedUsages(DLSemanticCacheNode target, DLSourceEdit edit)
+	{
+		assert target != null;
+		assert edit != null;
+
+		for (List<TypeUsage> usages : usagesByIdentifier.values()) {
+			for (TypeUsage usage : usages) {
+
+				if (edit.isBefore(usage.getStartOffset(), usage.getEndOffset())) {
+					target.addTypeUsage(usage);
+				} else if (edit.isBehind(usage.getStartOffset(), usage.getEndOffset())) {
+
+					TypeUsage copy = usage.copy();
+					moveEntry(copy, edit);
+					target.addTypeUsage(copy);
+				}
+			}
+		}
+	}
+
+	protected static void moveEntry(Entry entry, DLSourceEdit edit)
+	{
+		assert entry != null;
+		assert edit != null;
+
+		entry.setStartPosition(edit.shiftPosition(entry.getStartLine(), entry.getStartPosition()));
+		entry.setStartLine(edit.shiftLine(entry.getStartLine()));
+		entry.setStartOffset(edit.shiftOffset(entry.getStartOffset()));
+		entry.setEndPosition(edit.shiftPosition(entry.getEndLine(), entry.getEndPosition()));
+		entry.setEndLine(edit.shiftLine(entry.getEndLine()));
+		entry.setEndOffset(edit.shiftOffset(entry.getEndOffset()));
+	}
+
 	protected boolean isEntryVisible(Entry entry, int caretOffset)
 	{
 		assert entry != null;
@@ -266,6 +576,16 @@ class DLSemanticCacheModule implements DLSemanticCacheNode
 	{
 		return cache;
 	}
+
+	public long getSourceStamp()
+	{
+		return sourceStamp;
+	}
+
+	public long getSourceSize()
+	{
+		return sourceSize;
+	}
 	//</editor-fold>
 
 	@Override
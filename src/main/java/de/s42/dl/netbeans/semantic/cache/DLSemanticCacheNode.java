@@ -27,6 +27,10 @@ package de.s42.dl.netbeans.semantic.cache;
 
 import de.s42.dl.netbeans.semantic.model.ModuleEntry;
 import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.semantic.model.TypeUsage;
+import de.s42.dl.netbeans.syntax.DLSourceEdit;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import org.antlr.v4.runtime.ParserRuleContext;
 
@@ -45,6 +49,19 @@ public interface DLSemanticCacheNode
 
 	public Set<Type> getTypes(boolean resolveReferences);
 
+	/**
+	 * Makes this node immutable. Nodes are filled privately by one parser and frozen before they get published in the
+	 * cache, so readers never have to lock.
+	 */
+	public void freeze();
+
+	/**
+	 * Returns the keys of all nodes directly referenced by this node
+	 *
+	 * @return
+	 */
+	public Set<String> getReferencedKeys();
+
 	/**
 	 * Add a new type to this node
 	 *
@@ -87,6 +104,36 @@ public interface DLSemanticCacheNode
 	 */
 	public boolean hasType(String typeName, int caretOffset, boolean resolveReferences);
 
+	/**
+	 * Returns the type the given typeName resolves to before the given caretposition. Optionally recurse along the
+	 * referenced nodes.
+	 *
+	 * @param typeName
+	 * @param caretOffset
+	 * @param resolveReferences
+	 *
+	 * @return
+	 */
+	public Optional<Type> findType(String typeName, int caretOffset, boolean resolveReferences);
+
+	/**
+	 * Records a usage of a type in this node
+	 *
+	 * @param usage
+	 *
+	 * @return
+	 */
+	public boolean addTypeUsage(TypeUsage usage);
+
+	/**
+	 * Returns the usages of types with the given identifier in this node
+	 *
+	 * @param identifier
+	 *
+	 * @return
+	 */
+	public List<TypeUsage> getTypeUsages(String identifier);
+
 	/**
 	 * Return all types matching the given query. Optionally recurse along the referenced nodes.
 	 *
@@ -97,4 +144,32 @@ public interface DLSemanticCacheNode
 	 * @return
 	 */
 	public Set<Type> findTypes(String query, int caretOffset, boolean resolveReferences);
+
+	/**
+	 * Copies the types of this node which are not touched by the edit into the target node. Types before the edited
+	 * region are reused as they are, types behind the region are copied and moved by the edit.
+	 *
+	 * @param target
+	 * @param edit
+	 * @param behindRegion if true the types behind the region are copied, otherwise the ones before it
+	 */
+	public void copyUnchangedTypes(DLSemanticCacheNode target, DLSourceEdit edit, boolean behindRegion);
+
+	/**
+	 * Copies all references of this node which are not touched by the edit into the target node. References behind the
+	 * edited region are moved by the edit.
+	 *
+	 * @param target
+	 * @param edit
+	 */
+	public void copyUnchangedReferences(DLSemanticCacheNode target, DLSourceEdit edit);
+
+	/**
+	 * Copies all type usages of this node which are not touched by the edit into the target node. Usages behind the
+	 * edited region are moved by the edit.
+	 *
+	 * @param target
+	 * @param edit
+	 */
+	public void copyUnchangedUsages(DLSemanticCacheNode target, DLSourceEdit edit);
 }
@@ -0,0 +1,935 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheModule.NodeReference;
+import de.s42.dl.netbeans.semantic.model.EnumType;
+import de.s42.dl.netbeans.semantic.model.ModuleEntry;
+import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.semantic.model.TypeUsage;
+import de.s42.dl.netbeans.util.DLPreferences;
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.netbeans.api.project.FileOwnerQuery;
+import org.netbeans.api.project.Project;
+import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
+import org.openide.loaders.DataObject;
+import org.openide.loaders.DataObjectNotFoundException;
+import org.openide.modules.Places;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Persists the types and references of the cached modules per project in a binary file in the user cache dir. Each
+ * file starts with a table of contents (key, modification stamp, size, offset and length of the record) followed by
+ * the records. The files are memory mapped and records are just decoded when their module is requested and the
+ * module file did not change since it was indexed. This allows to resolve the types of unchanged modules after a
+ * restart without parsing them. As a mapped file can not be replaced on all platforms each write creates a new
+ * generation of the file (name.generation.dlidx) and the older generations are deleted once they are not mapped
+ * anymore.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSemanticIndex
+{
+
+	private final static Logger log = LogManager.getLogger(DLSemanticIndex.class.getName());
+
+	public final static int MAGIC = 0x444C4958;
+	public final static int VERSION = 2;
+	public final static String INDEX_DIRECTORY = "dl-index";
+	public final static String INDEX_EXTENSION = ".dlidx";
+	public final static String DEFAULT_INDEX_NAME = "default";
+	public final static int WRITE_DELAY = 5000;
+
+	protected final static int HEADER_SIZE = 12;
+	protected final static byte KIND_TYPE = 0;
+	protected final static byte KIND_ENUM = 1;
+
+	protected final static RequestProcessor WRITER = new RequestProcessor(DLSemanticIndex.class.getName(), 1, false, false);
+
+	protected final DLSemanticCache cache;
+
+	// Index paths by module key - resolving the owning project is expensive
+	protected final static Map<String, Path> INDEX_PATHS_BY_KEY = new ConcurrentHashMap<>();
+
+	// Mapped index files by their path
+	protected final Map<Path, IndexFile> filesByPath = new ConcurrentHashMap<>();
+
+	// Current generation file of each index path
+	protected final Map<Path, Path> generationFilesByPath = new ConcurrentHashMap<>();
+
+	// Nodes which changed since the last write by key by the path of their index file - held until they are written
+	// as evicted nodes can not be looked up in the cache anymore
+	protected final Map<Path, Map<String, DirtyNode>> dirtyNodesByPath = new ConcurrentHashMap<>();
+
+	// Nodes decoded from the index - they do not have to be written again
+	protected final Set<DLSemanticCacheNode> loadedNodes = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	protected final RequestProcessor.Task writeTask = WRITER.create(this::write);
+
+	protected static class IndexEntry
+	{
+
+		protected long stamp;
+		protected long size;
+		protected int offset;
+		protected int length;
+	}
+
+	protected static class DirtyNode
+	{
+
+		protected final DLSemanticCacheModule node;
+
+		// Built from the content of an open document which got saved -> the file stamp is taken when writing
+		protected final boolean saved;
+
+		protected DirtyNode(DLSemanticCacheModule node, boolean saved)
+		{
+			assert node != null;
+
+			this.node = node;
+			this.saved = saved;
+		}
+	}
+
+	protected static class IndexFile
+	{
+
+		protected final ByteBuffer buffer;
+		protected final Map<String, IndexEntry> entriesByKey;
+
+		protected IndexFile(ByteBuffer buffer, Map<String, IndexEntry> entriesByKey)
+		{
+			assert buffer != null;
+			assert entriesByKey != null;
+
+			this.buffer = buffer;
+			this.entriesByKey = entriesByKey;
+		}
+
+		protected ByteBuffer getRecord(IndexEntry entry)
+		{
+			assert entry != null;
+
+			// Duplicate as the position of a shared buffer is not thread safe
+			ByteBuffer record = buffer.duplicate();
+			record.position(entry.offset);
+			record.limit(entry.offset + entry.length);
+
+			return record.slice();
+		}
+	}
+
+	public DLSemanticIndex(DLSemanticCache cache)
+	{
+		assert cache != null;
+
+		this.cache = cache;
+	}
+
+	/**
+	 * Decodes the indexed node for the given key if its module file did not change since it was indexed
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public Optional<DLSemanticCacheNode> load(String key)
+	{
+		assert key != null;
+
+		if (!DLPreferences.isIndexEnabled()) {
+			return Optional.empty();
+		}
+
+		Optional<Path> optIndexPath = getIndexPath(key);
+
+		if (optIndexPath.isEmpty()) {
+			return Optional.empty();
+		}
+
+		Optional<IndexFile> optIndexFile = getIndexFile(optIndexPath.orElseThrow());
+
+		if (optIndexFile.isEmpty()) {
+			return Optional.empty();
+		}
+
+		IndexFile indexFile = optIndexFile.orElseThrow();
+		IndexEntry entry = indexFile.entriesByKey.get(key);
+
+		if (entry == null || !isValid(key, entry)) {
+			return Optional.empty();
+		}
+
+		try {
+			DLSemanticCacheModule node = decodeNode(key, indexFile.getRecord(entry));
+			loadedNodes.add(node);
+
+			log.debug("load", key);
+
+			return Optional.of(node);
+		} catch (BufferUnderflowException | IllegalArgumentException ex) {
+			log.warn("load", "Corrupt index record", key, ex.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	/**
+	 * Tells if there is a valid record for the given key without decoding it
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	public boolean isIndexed(String key)
+	{
+		assert key != null;
+
+		if (!DLPreferences.isIndexEnabled()) {
+			return false;
+		}
+
+		Optional<IndexFile> optIndexFile = getIndexPath(key).flatMap(this::getIndexFile);
+
+		if (optIndexFile.isEmpty()) {
+			return false;
+		}
+
+		IndexEntry entry = optIndexFile.orElseThrow().entriesByKey.get(key);
+
+		return entry != null && isValid(key, entry);
+	}
+
+	/**
+	 * Writes the scheduled nodes now and waits until they are written
+	 */
+	public void flush()
+	{
+		writeTask.schedule(0);
+		writeTask.waitFinished();
+	}
+
+	/**
+	 * Schedules the given node to be written into the index
+	 *
+	 * @param node
+	 */
+	public void update(DLSemanticCacheNode node)
+	{
+		update(node, false);
+	}
+
+	/**
+	 * Schedules the node of an open document to be written into the index after the document got saved. The node was
+	 * built from the editor content before the save, so the stamp of the saved file is stored with it.
+	 *
+	 * @param node
+	 */
+	public void updateSaved(DLSemanticCacheNode node)
+	{
+		update(node, true);
+	}
+
+	protected void update(DLSemanticCacheNode node, boolean saved)
+	{
+		assert node != null;
+
+		if (!(node instanceof DLSemanticCacheModule)
+			|| loadedNodes.contains(node)
+			|| !DLPreferences.isIndexEnabled()) {
+			return;
+		}
+
+		Optional<Path> optIndexPath = getIndexPath(node.getKey());
+
+		if (optIndexPath.isEmpty()) {
+			return;
+		}
+
+		dirtyNodesByPath
+			.computeIfAbsent(optIndexPath.orElseThrow(), (p) -> new ConcurrentHashMap<>())
+			.put(node.getKey(), new DirtyNode((DLSemanticCacheModule) node, saved));
+
+		// Bundle the writes of a parsing burst
+		writeTask.schedule(WRITE_DELAY);
+	}
+
+	/**
+	 * Writes the node of the given key right away if it was not written yet, so an evicted node is not held longer
+	 * than needed
+	 *
+	 * @param key
+	 */
+	public void evicted(String key)
+	{
+		assert key != null;
+
+		Optional<Path> optIndexPath = getIndexPath(key);
+
+		if (optIndexPath.isEmpty()) {
+			return;
+		}
+
+		Map<String, DirtyNode> dirtyNodes = dirtyNodesByPath.get(optIndexPath.orElseThrow());
+
+		if (dirtyNodes != null && dirtyNodes.containsKey(key)) {
+			writeTask.schedule(0);
+		}
+	}
+
+	/**
+	 * Writes all index files with changed nodes
+	 */
+	protected void write()
+	{
+		for (Path indexPath : new ArrayList<>(dirtyNodesByPath.keySet())) {
+
+			Map<String, DirtyNode> dirtyNodes = dirtyNodesByPath.remove(indexPath);
+
+			if (dirtyNodes != null) {
+				write(indexPath, dirtyNodes);
+			}
+		}
+	}
+
+	protected void write(Path indexPath, Map<String, DirtyNode> dirtyNodes)
+	{
+		assert indexPath != null;
+		assert dirtyNodes != null;
+
+		log.start("DLSemanticIndex.write");
+
+		try {
+
+			// Records by key - unchanged valid records are copied as they are
+			Map<String, byte[]> recordsByKey = new LinkedHashMap<>();
+			Map<String, IndexEntry> entriesByKey = new HashMap<>();
+
+			Optional<IndexFile> optOldFile = getIndexFile(indexPath);
+			if (optOldFile.isPresent()) {
+
+				IndexFile oldFile = optOldFile.orElseThrow();
+
+				for (Map.Entry<String, IndexEntry> oldEntry : oldFile.entriesByKey.entrySet()) {
+
+					String key = oldEntry.getKey();
+
+					if (dirtyNodes.containsKey(key) || !isValid(key, oldEntry.getValue())) {
+						continue;
+					}
+
+					ByteBuffer record = oldFile.getRecord(oldEntry.getValue());
+					byte[] data = new byte[record.remaining()];
+					record.get(data);
+
+					recordsByKey.put(key, data);
+					entriesByKey.put(key, oldEntry.getValue());
+				}
+			}
+
+			for (Map.Entry<String, DirtyNode> dirtyNode : dirtyNodes.entrySet()) {
+
+				String key = dirtyNode.getKey();
+
+				// The node of a modified document does not reflect the file content
+				if (isModifiedInEditor(key)) {
+					continue;
+				}
+
+				DLSemanticCacheModule node = dirtyNode.getValue().node;
+
+				// Store the stamp of the content the node was built from - if the file changed since then the node is
+				// outdated and gets rebuilt and indexed after the change got noticed
+				IndexEntry entry = new IndexEntry();
+				if (dirtyNode.getValue().saved) {
+					Optional<BasicFileAttributes> optAttributes = readAttributes(key);
+					entry.stamp = optAttributes.map((attributes) -> attributes.lastModifiedTime().toMillis()).orElse(-1L);
+					entry.size = optAttributes.map(BasicFileAttributes::size).orElse(-1L);
+				} else {
+					entry.stamp = node.getSourceStamp();
+					entry.size = node.getSourceSize();
+				}
+
+				if (entry.stamp < 0 || !isValid(key, entry)) {
+					continue;
+				}
+
+				recordsByKey.put(key, encodeNode(node));
+				entriesByKey.put(key, entry);
+			}
+
+			Optional<Path> optOldGenerationFile = getGenerationFile(indexPath);
+			Path generationFile = createGenerationPath(indexPath, optOldGenerationFile.map(this::getGeneration).orElse(0L) + 1);
+
+			writeIndexFile(generationFile, recordsByKey, entriesByKey);
+
+			// Map the new file on next access - the old mapping may still be used by running loads
+			generationFilesByPath.put(indexPath, generationFile);
+			filesByPath.remove(indexPath);
+
+			// Fails as long as the old file is mapped on some platforms -> removed on next startup then
+			if (optOldGenerationFile.isPresent()) {
+				deleteQuietly(optOldGenerationFile.orElseThrow());
+			}
+
+			log.debug("write", "Estimated heap bytes per type", cache.estimateHeapBytesPerType());
+		} catch (IOException ex) {
+			log.warn("write", "Could not write index", indexPath, ex.getMessage());
+		} finally {
+			log.stopDebug("DLSemanticIndex.write");
+		}
+	}
+
+	protected void writeIndexFile(Path generationFile, Map<String, byte[]> recordsByKey, Map<String, IndexEntry> entriesByKey) throws IOException
+	{
+		assert generationFile != null;
+		assert recordsByKey != null;
+		assert entriesByKey != null;
+
+		// Encode the table of contents first to know where the records start
+		ByteArrayOutputStream tocBytes = new ByteArrayOutputStream();
+		DataOutputStream toc = new DataOutputStream(tocBytes);
+
+		toc.writeInt(recordsByKey.size());
+
+		int recordOffset = 0;
+		for (Map.Entry<String, byte[]> record : recordsByKey.entrySet()) {
+
+			IndexEntry entry = entriesByKey.get(record.getKey());
+
+			writeString(toc, record.getKey());
+			toc.writeLong(entry.stamp);
+			toc.writeLong(entry.size);
+			toc.writeInt(recordOffset);
+			toc.writeInt(record.getValue().length);
+
+			recordOffset += record.getValue().length;
+		}
+		toc.flush();
+
+		// Write into a temp file and move it to the new generation at once
+		Path tempPath = generationFile.resolveSibling(generationFile.getFileName() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+			// The record offsets are stored relative to the end of the table of contents
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC);
+			header.putInt(VERSION);
+			header.putInt(HEADER_SIZE + tocBytes.size());
+			header.flip();
+			channel.write(header);
+
+			channel.write(ByteBuffer.wrap(tocBytes.toByteArray()));
+
+			for (byte[] record : recordsByKey.values()) {
+				channel.write(ByteBuffer.wrap(record));
+			}
+		}
+
+		Files.move(tempPath, generationFile, StandardCopyOption.ATOMIC_MOVE);
+
+		log.debug("writeIndexFile", generationFile, recordsByKey.size());
+	}
+
+	/**
+	 * Returns the newest generation file of the index. Older generations left over from the last session are deleted
+	 * on the first access.
+	 *
+	 * @param indexPath
+	 *
+	 * @return
+	 */
+	protected Optional<Path> getGenerationFile(Path indexPath)
+	{
+		assert indexPath != null;
+
+		Path generationFile = generationFilesByPath.get(indexPath);
+
+		if (generationFile != null) {
+			return Optional.of(generationFile);
+		}
+
+		Path directory = indexPath.getParent();
+		String prefix = getBaseName(indexPath) + ".";
+		List<Path> outdatedFiles = new ArrayList<>();
+
+		if (Files.isDirectory(directory)) {
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + INDEX_EXTENSION)) {
+				for (Path file : files) {
+
+					long generation = getGeneration(file);
+
+					if (generation < 0) {
+						continue;
+					}
+
+					if (generationFile == null || generation > getGeneration(generationFile)) {
+						if (generationFile != null) {
+							outdatedFiles.add(generationFile);
+						}
+						generationFile = file;
+					} else {
+						outdatedFiles.add(file);
+					}
+				}
+			} catch (IOException ex) {
+				log.warn("getGenerationFile", "Could not list index directory", directory, ex.getMessage());
+			}
+		}
+
+		for (Path outdatedFile : outdatedFiles) {
+			deleteQuietly(outdatedFile);
+		}
+
+		if (generationFile == null) {
+			return Optional.empty();
+		}
+
+		// A write might have created a newer generation meanwhile
+		Path currentFile = generationFilesByPath.putIfAbsent(indexPath, generationFile);
+
+		return Optional.of((currentFile != null) ? currentFile : generationFile);
+	}
+
+	protected static String getBaseName(Path indexPath)
+	{
+		assert indexPath != null;
+
+		String name = indexPath.getFileName().toString();
+
+		return name.substring(0, name.length() - INDEX_EXTENSION.length());
+	}
+
+	protected static Path createGenerationPath(Path indexPath, long generation)
+	{
+		assert indexPath != null;
+
+		return indexPath.resolveSibling(getBaseName(indexPath) + "." + generation + INDEX_EXTENSION);
+	}
+
+	/**
+	 * @param generationFile
+	 *
+	 * @return the generation of the file or -1 if the name contains none
+	 */
+	protected long getGeneration(Path generationFile)
+	{
+		assert generationFile != null;
+
+		String name = generationFile.getFileName().toString();
+		name = name.substring(0, name.length() - INDEX_EXTENSION.length());
+
+		try {
+			return Long.parseLong(name.substring(name.lastIndexOf('.') + 1));
+		} catch (NumberFormatException | IndexOutOfBoundsException ex) {
+			return -1;
+		}
+	}
+
+	protected static void deleteQuietly(Path file)
+	{
+		assert file != null;
+
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			log.debug("deleteQuietly", "Could not delete", file, ex.getMessage());
+		}
+	}
+
+	protected Optional<IndexFile> getIndexFile(Path indexPath)
+	{
+		assert indexPath != null;
+
+		IndexFile indexFile = filesByPath.get(indexPath);
+
+		if (indexFile != null) {
+			return Optional.of(indexFile);
+		}
+
+		Optional<Path> optGenerationFile = getGenerationFile(indexPath);
+
+		if (optGenerationFile.isEmpty()) {
+			return Optional.empty();
+		}
+
+		try {
+			indexFile = readIndexFile(optGenerationFile.orElseThrow());
+			filesByPath.put(indexPath, indexFile);
+
+			return Optional.of(indexFile);
+		} catch (IOException | BufferUnderflowException | IllegalArgumentException ex) {
+			log.warn("getIndexFile", "Could not read index", optGenerationFile.orElseThrow(), ex.getMessage());
+			return Optional.empty();
+		}
+	}
+
+	protected IndexFile readIndexFile(Path indexPath) throws IOException
+	{
+		assert indexPath != null;
+
+		ByteBuffer buffer;
+
+		// The mapping stays valid after closing the channel
+		try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			throw new IOException("Unknown index format");
+		}
+
+		int recordsStart = buffer.getInt();
+
+		int count = buffer.getInt();
+		Map<String, IndexEntry> entriesByKey = new HashMap<>(count * 2);
+
+		for (int i = 0; i < count; ++i) {
+
+			String key = readString(buffer);
+
+			IndexEntry entry = new IndexEntry();
+			entry.stamp = buffer.getLong();
+			entry.size = buffer.getLong();
+			entry.offset = recordsStart + buffer.getInt();
+			entry.length = buffer.getInt();
+
+			if (entry.offset + entry.length > buffer.limit()) {
+				throw new IOException("Index is truncated");
+			}
+
+			entriesByKey.put(key, entry);
+		}
+
+		return new IndexFile(buffer, entriesByKey);
+	}
+
+	protected static byte[] encodeNode(DLSemanticCacheModule node) throws IOException
+	{
+		assert node != null;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+
+		// Write in document order to make sure alias targets are decoded before their aliases
+		List<Type> types = new ArrayList<>(node.types.values());
+		types.sort(Comparator.comparingInt(Type::getStartOffset));
+
+		Map<Type, Integer> indices = new IdentityHashMap<>();
+
+		out.writeInt(types.size());
+		for (Type type : types) {
+
+			out.writeByte(type instanceof EnumType ? KIND_ENUM : KIND_TYPE);
+			writeString(out, type.getIdentifier());
+			writeString(out, type.getModuleId());
+			out.writeInt(type.getStartLine());
+			out.writeInt(type.getStartPosition());
+			out.writeInt(type.getStartOffset());
+			out.writeInt(type.getEndLine());
+			out.writeInt(type.getEndPosition());
+			out.writeInt(type.getEndOffset());
+
+			Integer aliasIndex = indices.get(type.getAliasOf());
+			out.writeInt(aliasIndex != null ? aliasIndex : -1);
+
+			if (type instanceof EnumType) {
+				List<String> values = ((EnumType) type).getValues();
+				out.writeInt(values.size());
+				for (String value : values) {
+					writeString(out, value);
+				}
+			}
+
+			indices.put(type, indices.size());
+		}
+
+		out.writeInt(node.references.size());
+		for (NodeReference reference : node.references) {
+			writeString(out, reference.key);
+			out.writeInt(reference.startLine);
+			out.writeInt(reference.startPosition);
+			out.writeInt(reference.startOffset);
+			out.writeInt(reference.endLine);
+			out.writeInt(reference.endPosition);
+			out.writeInt(reference.endOffset);
+		}
+
+		List<TypeUsage> usages = new ArrayList<>();
+		for (List<TypeUsage> identifierUsages : node.usagesByIdentifier.values()) {
+			usages.addAll(identifierUsages);
+		}
+
+		out.writeInt(usages.size());
+		for (TypeUsage usage : usages) {
+			writeString(out, usage.getIdentifier());
+			writeString(out, usage.getTypeModuleId());
+			out.writeInt(usage.getStartLine());
+			out.writeInt(usage.getStartPosition());
+			out.writeInt(usage.getStartOffset());
+			out.writeInt(usage.getEndLine());
+			out.writeInt(usage.getEndPosition());
+			out.writeInt(usage.getEndOffset());
+		}
+
+		out.flush();
+
+		return bytes.toByteArray();
+	}
+
+	protected DLSemanticCacheModule decodeNode(String key, ByteBuffer record)
+	{
+		assert key != null;
+		assert record != null;
+
+		DLSemanticCacheModule node = new DLSemanticCacheModule(cache, key, new ModuleEntry(key));
+
+		// Module ids repeat for all entries of a record -> share one instance per id
+		Map<String, String> moduleIds = new HashMap<>();
+		moduleIds.put(key, key);
+
+		int typeCount = record.getInt();
+		List<Type> types = new ArrayList<>(typeCount);
+
+		for (int i = 0; i < typeCount; ++i) {
+
+			byte kind = record.get();
+			String identifier = readString(record);
+			String moduleId = moduleIds.computeIfAbsent(readString(record), (id) -> id);
+			int startLine = record.getInt();
+			int startPosition = record.getInt();
+			int startOffset = record.getInt();
+			int endLine = record.getInt();
+			int endPosition = record.getInt();
+			int endOffset = record.getInt();
+			int aliasIndex = record.getInt();
+			Type aliasOf = (aliasIndex >= 0) ? types.get(aliasIndex) : null;
+
+			Type type;
+			if (kind == KIND_ENUM) {
+
+				int valueCount = record.getInt();
+				List<String> values = new ArrayList<>(valueCount);
+				for (int v = 0; v < valueCount; ++v) {
+					values.add(readString(record));
+				}
+
+				type = new EnumType(identifier, values, null, moduleId, (EnumType) aliasOf);
+			} else {
+				type = new Type(identifier, null, moduleId, aliasOf);
+			}
+
+			type.setStartLine(startLine);
+			type.setStartPosition(startPosition);
+			type.setStartOffset(startOffset);
+			type.setEndLine(endLine);
+			type.setEndPosition(endPosition);
+			type.setEndOffset(endOffset);
+
+			types.add(type);
+			node.addType(type);
+		}
+
+		int referenceCount = record.getInt();
+		for (int i = 0; i < referenceCount; ++i) {
+
+			NodeReference reference = new NodeReference();
+			reference.key = readString(record);
+			reference.startLine = record.getInt();
+			reference.startPosition = record.getInt();
+			reference.startOffset = record.getInt();
+			reference.endLine = record.getInt();
+			reference.endPosition = record.getInt();
+			reference.endOffset = record.getInt();
+
+			node.addNodeReference(reference);
+		}
+
+		int usageCount = record.getInt();
+		for (int i = 0; i < usageCount; ++i) {
+
+			String identifier = readString(record);
+			String typeModuleId = moduleIds.computeIfAbsent(readString(record), (id) -> id);
+			TypeUsage usage = new TypeUsage(identifier, typeModuleId, null, key);
+			usage.setStartLine(record.getInt());
+			usage.setStartPosition(record.getInt());
+			usage.setStartOffset(record.getInt());
+			usage.setEndLine(record.getInt());
+			usage.setEndPosition(record.getInt());
+			usage.setEndOffset(record.getInt());
+
+			node.addTypeUsage(usage);
+		}
+
+		return node;
+	}
+
+	protected static void writeString(DataOutputStream out, String value) throws IOException
+	{
+		assert out != null;
+		assert value != null;
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	protected static String readString(ByteBuffer buffer)
+	{
+		assert buffer != null;
+
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the index file of the project owning the module file or the default index file for modules outside of
+	 * projects. Modules which are not loaded from a file are not indexed.
+	 *
+	 * @param key
+	 *
+	 * @return
+	 */
+	protected static Optional<Path> getIndexPath(String key)
+	{
+		assert key != null;
+
+		Path indexPath = INDEX_PATHS_BY_KEY.get(key);
+
+		if (indexPath != null) {
+			return Optional.of(indexPath);
+		}
+
+		Path modulePath;
+		try {
+			modulePath = Path.of(key);
+		} catch (InvalidPathException ex) {
+			return Optional.empty();
+		}
+
+		if (!Files.isRegularFile(modulePath)) {
+			return Optional.empty();
+		}
+
+		String indexName = DEFAULT_INDEX_NAME;
+
+		Project project = FileOwnerQuery.getOwner(modulePath.toUri());
+		if (project != null) {
+			String projectPath = project.getProjectDirectory().getPath();
+			indexName = project.getProjectDirectory().getNameExt() + "-" + Integer.toHexString(projectPath.hashCode());
+		}
+
+		File indexDirectory = Places.getCacheSubdirectory(INDEX_DIRECTORY);
+		indexPath = indexDirectory.toPath().resolve(indexName + INDEX_EXTENSION);
+
+		INDEX_PATHS_BY_KEY.put(key, indexPath);
+
+		return Optional.of(indexPath);
+	}
+
+	protected static boolean isValid(String key, IndexEntry entry)
+	{
+		assert key != null;
+		assert entry != null;
+
+		Optional<BasicFileAttributes> optAttributes = readAttributes(key);
+
+		if (optAttributes.isEmpty()) {
+			return false;
+		}
+
+		BasicFileAttributes attributes = optAttributes.orElseThrow();
+
+		return entry.stamp == attributes.lastModifiedTime().toMillis() && entry.size == attributes.size();
+	}
+
+	protected static boolean isModifiedInEditor(String key)
+	{
+		assert key != null;
+
+		FileObject fileObject = FileUtil.toFileObject(new File(key));
+
+		if (fileObject == null) {
+			return false;
+		}
+
+		try {
+			return DataObject.find(fileObject).isModified();
+		} catch (DataObjectNotFoundException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads modification time and size of the module file with one file system access
+	 *
+	 * @param key
+	 *
+	 * @return empty if the key denotes no readable file
+	 */
+	protected static Optional<BasicFileAttributes> readAttributes(String key)
+	{
+		assert key != null;
+
+		try {
+			return Optional.of(Files.readAttributes(Path.of(key), BasicFileAttributes.class));
+		} catch (IOException | InvalidPathException ex) {
+			return Optional.empty();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.model.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Set;
+
+/**
+ * Case independent prefix index of the types of a node. The types are sorted by their lower case identifier so a
+ * prefix query is a binary search for the first match followed by a scan over the matches. Additionally the types are
+ * kept in the order of their end offset so all types visible at a caret are a prefix of that order.
+ *
+ * @author Benjamin Schiller
+ */
+class DLTypePrefixIndex
+{
+
+	protected final String[] lowerCaseIdentifiers;
+	protected final Type[] types;
+	protected final Type[] typesByEndOffset;
+	protected final int[] endOffsets;
+
+	DLTypePrefixIndex(Collection<Type> types)
+	{
+		assert types != null;
+
+		Type[] sortedTypes = types.toArray(Type[]::new);
+		String[] sortedIdentifiers = new String[sortedTypes.length];
+
+		Arrays.sort(sortedTypes, Comparator.comparing((type) -> type.getIdentifier().toLowerCase()));
+
+		for (int i = 0; i < sortedTypes.length; ++i) {
+			sortedIdentifiers[i] = sortedTypes[i].getIdentifier().toLowerCase();
+		}
+
+		this.types = sortedTypes;
+		this.lowerCaseIdentifiers = sortedIdentifiers;
+
+		typesByEndOffset = sortedTypes.clone();
+		Arrays.sort(typesByEndOffset, Comparator.comparingInt(Type::getEndOffset));
+
+		endOffsets = new int[typesByEndOffset.length];
+		for (int i = 0; i < typesByEndOffset.length; ++i) {
+			endOffsets[i] = typesByEndOffset[i].getEndOffset();
+		}
+	}
+
+	/**
+	 * Adds all types starting with the given lower case prefix which end before the caret offset to the result
+	 *
+	 * @param lowerCasePrefix
+	 * @param caretOffset
+	 * @param result
+	 */
+	void findTypes(String lowerCasePrefix, int caretOffset, Set<Type> result)
+	{
+		assert lowerCasePrefix != null;
+		assert result != null;
+
+		// Without prefix all visible types match
+		if (lowerCasePrefix.isEmpty()) {
+			findVisibleTypes(caretOffset, result);
+			return;
+		}
+
+		for (int i = lowerBound(lowerCasePrefix); i < types.length; ++i) {
+
+			if (!lowerCaseIdentifiers[i].startsWith(lowerCasePrefix)) {
+				break;
+			}
+
+			if (types[i].getEndOffset() <= caretOffset) {
+				result.add(types[i]);
+			}
+		}
+	}
+
+	/**
+	 * Adds all types which end before or at the caret offset to the result
+	 *
+	 * @param caretOffset
+	 * @param result
+	 */
+	void findVisibleTypes(int caretOffset, Set<Type> result)
+	{
+		assert result != null;
+
+		int count = DLOffsets.countVisible(endOffsets, caretOffset);
+
+		for (int i = 0; i < count; ++i) {
+			result.add(typesByEndOffset[i]);
+		}
+	}
+
+	/**
+	 * @param lowerCasePrefix
+	 *
+	 * @return the index of the first identifier not smaller than the prefix
+	 */
+	protected int lowerBound(String lowerCasePrefix)
+	{
+		assert lowerCasePrefix != null;
+
+		int low = 0;
+		int high = lowerCaseIdentifiers.length;
+
+		while (low < high) {
+
+			int middle = (low + high) >>> 1;
+
+			if (lowerCaseIdentifiers[middle].compareTo(lowerCasePrefix) < 0) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+}
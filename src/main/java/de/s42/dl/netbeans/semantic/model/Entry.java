@@ -26,7 +26,10 @@
 package de.s42.dl.netbeans.semantic.model;
 
 import de.s42.dl.instances.DefaultDLModule;
+import de.s42.dl.netbeans.util.MemoryHelper;
+import de.s42.dl.netbeans.util.StringInterner;
 import java.util.Objects;
+import java.util.Set;
 import org.antlr.v4.runtime.ParserRuleContext;
 
 /**
@@ -50,8 +53,9 @@ public abstract class Entry
 		assert identifier != null;
 		assert moduleId != null;
 
+		// Identifiers get repeated across modules - the entries of a module share the module id of their parser anyways
 		this.moduleId = moduleId;
-		this.identifier = identifier;
+		this.identifier = StringInterner.intern(identifier);
 
 		if (locationContext != null) {
 			startLine = locationContext.getStart().getLine();
@@ -70,6 +74,34 @@ public abstract class Entry
 		}
 	}
 
+	/**
+	 * Estimates the heap bytes retained by this entry
+	 *
+	 * @param counted objects already counted - shared strings are just counted once
+	 *
+	 * @return
+	 */
+	public long estimateHeapSize(Set<Object> counted)
+	{
+		assert counted != null;
+
+		return MemoryHelper.estimateObjectSize(2, 6 * MemoryHelper.INT)
+			+ MemoryHelper.estimateStringSize(identifier, counted)
+			+ MemoryHelper.estimateStringSize(moduleId, counted);
+	}
+
+	protected void copyLocation(Entry other)
+	{
+		assert other != null;
+
+		startLine = other.startLine;
+		startPosition = other.startPosition;
+		startOffset = other.startOffset;
+		endLine = other.endLine;
+		endPosition = other.endPosition;
+		endOffset = other.endOffset;
+	}
+
 	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
 	public String getIdentifier()
 	{
@@ -78,7 +110,7 @@ public abstract class Entry
 
 	public void setIdentifier(String identifier)
 	{
-		this.identifier = identifier;
+		this.identifier = StringInterner.intern(identifier);
 	}
 
 	public int getStartLine()
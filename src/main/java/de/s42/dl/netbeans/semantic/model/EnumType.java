@@ -25,9 +25,11 @@
 //</editor-fold>
 package de.s42.dl.netbeans.semantic.model;
 
+import de.s42.dl.netbeans.util.MemoryHelper;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.antlr.v4.runtime.ParserRuleContext;
 
 /**
@@ -48,13 +50,43 @@ public class EnumType extends Type
 	{
 		super(identifier, locationContext, moduleId, aliasOf);
 
-		if (values != null) {
-			this.values = Collections.unmodifiableList(new ArrayList(values));
+		if (values != null && !values.isEmpty()) {
+			this.values = Collections.unmodifiableList(new ArrayList<>(values));
 		} else {
-			this.values = Collections.EMPTY_LIST;
+			this.values = Collections.emptyList();
 		}
 	}
 
+	@Override
+	public EnumType copy(Type aliasOf)
+	{
+		assert aliasOf == null || aliasOf instanceof EnumType;
+
+		EnumType copy = new EnumType(identifier, values, null, moduleId, (EnumType) aliasOf);
+		copy.copyLocation(this);
+
+		return copy;
+	}
+
+	@Override
+	public long estimateHeapSize(Set<Object> counted)
+	{
+		assert counted != null;
+
+		long size = MemoryHelper.estimateObjectSize(6, 6 * MemoryHelper.INT)
+			+ MemoryHelper.estimateStringSize(identifier, counted)
+			+ MemoryHelper.estimateStringSize(moduleId, counted)
+			+ MemoryHelper.estimateListSize(contained, counted)
+			+ MemoryHelper.estimateListSize(extended, counted)
+			+ MemoryHelper.estimateListSize(values, counted);
+
+		for (String value : values) {
+			size += MemoryHelper.estimateStringSize(value, counted);
+		}
+
+		return size;
+	}
+
 	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
 	public List<String> getValues()
 	{
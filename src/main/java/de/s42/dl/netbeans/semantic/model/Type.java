@@ -25,9 +25,11 @@
 //</editor-fold>
 package de.s42.dl.netbeans.semantic.model;
 
+import de.s42.dl.netbeans.util.MemoryHelper;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import org.antlr.v4.runtime.ParserRuleContext;
 
 /**
@@ -37,8 +39,9 @@ import org.antlr.v4.runtime.ParserRuleContext;
 public class Type extends Entry
 {
 
-	protected final List<Type> contained = new ArrayList<>();
-	protected final List<Type> extended = new ArrayList<>();
+	// Allocated on first add as most types neither contain nor extend others
+	protected List<Type> contained;
+	protected List<Type> extended;
 	protected final Type aliasOf;
 
 	public Type(String identifier, ParserRuleContext locationContext, String moduleId)
@@ -53,10 +56,37 @@ public class Type extends Entry
 		this.aliasOf = aliasOf;
 	}
 
+	/**
+	 * Creates a copy of this type at the same location. Allows to move unchanged types without touching the original.
+	 *
+	 * @param aliasOf
+	 *
+	 * @return
+	 */
+	public Type copy(Type aliasOf)
+	{
+		Type copy = new Type(identifier, null, moduleId, aliasOf);
+		copy.copyLocation(this);
+
+		if (contained != null) {
+			copy.contained = new ArrayList<>(contained);
+		}
+
+		if (extended != null) {
+			copy.extended = new ArrayList<>(extended);
+		}
+
+		return copy;
+	}
+
 	public void addContained(Type type)
 	{
 		assert type != null;
 
+		if (contained == null) {
+			contained = new ArrayList<>(1);
+		}
+
 		contained.add(type);
 	}
 
@@ -64,17 +94,41 @@ public class Type extends Entry
 	{
 		assert type != null;
 
+		if (extended == null) {
+			extended = new ArrayList<>(1);
+		}
+
 		extended.add(type);
 	}
 
+	@Override
+	public long estimateHeapSize(Set<Object> counted)
+	{
+		assert counted != null;
+
+		return MemoryHelper.estimateObjectSize(5, 6 * MemoryHelper.INT)
+			+ MemoryHelper.estimateStringSize(identifier, counted)
+			+ MemoryHelper.estimateStringSize(moduleId, counted)
+			+ MemoryHelper.estimateListSize(contained, counted)
+			+ MemoryHelper.estimateListSize(extended, counted);
+	}
+
 	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
 	public List<Type> getExtended()
 	{
+		if (extended == null) {
+			return Collections.emptyList();
+		}
+
 		return Collections.unmodifiableList(extended);
 	}
 
 	public List<Type> getContained()
 	{
+		if (contained == null) {
+			return Collections.emptyList();
+		}
+
 		return Collections.unmodifiableList(contained);
 	}
 
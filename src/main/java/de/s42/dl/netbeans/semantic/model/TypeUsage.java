@@ -0,0 +1,123 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.model;
+
+import de.s42.dl.netbeans.util.MemoryHelper;
+import java.util.Objects;
+import java.util.Set;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+/**
+ * An occurrence of a type name in a module (type identifiers, parent, contains and generic types). The identifier is
+ * the one of the type declaration it resolved to. The module id is the module containing the usage.
+ *
+ * @author Benjamin Schiller
+ */
+public class TypeUsage extends Entry
+{
+
+	protected final String typeModuleId;
+
+	public TypeUsage(Type type, ParserRuleContext locationContext, String moduleId)
+	{
+		this(type.getIdentifier(), type.getModuleId(), locationContext, moduleId);
+	}
+
+	public TypeUsage(String identifier, String typeModuleId, ParserRuleContext locationContext, String moduleId)
+	{
+		super(identifier, locationContext, moduleId);
+
+		assert typeModuleId != null;
+
+		this.typeModuleId = typeModuleId;
+	}
+
+	/**
+	 * Creates a copy of this usage at the same location. Allows to move unchanged usages without touching the original.
+	 *
+	 * @return
+	 */
+	public TypeUsage copy()
+	{
+		TypeUsage copy = new TypeUsage(identifier, typeModuleId, null, moduleId);
+		copy.copyLocation(this);
+
+		return copy;
+	}
+
+	/**
+	 * @param type
+	 *
+	 * @return true if this is a usage of the given type declaration
+	 */
+	public boolean isUsageOf(Type type)
+	{
+		assert type != null;
+
+		return identifier.equals(type.getIdentifier()) && typeModuleId.equals(type.getModuleId());
+	}
+
+	@Override
+	public long estimateHeapSize(Set<Object> counted)
+	{
+		assert counted != null;
+
+		return MemoryHelper.estimateObjectSize(3, 6 * MemoryHelper.INT)
+			+ MemoryHelper.estimateStringSize(identifier, counted)
+			+ MemoryHelper.estimateStringSize(moduleId, counted)
+			+ MemoryHelper.estimateStringSize(typeModuleId, counted);
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	/**
+	 * @return the id of the module declaring the used type
+	 */
+	public String getTypeModuleId()
+	{
+		return typeModuleId;
+	}
+	//</editor-fold>
+
+	// <editor-fold desc="EqualsHashcode" defaultstate="collapsed">
+	@Override
+	public int hashCode()
+	{
+		int hash = super.hashCode();
+		hash = 79 * hash + Objects.hashCode(this.typeModuleId);
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (!super.equals(obj)) {
+			return false;
+		}
+		final TypeUsage other = (TypeUsage) obj;
+		return Objects.equals(this.typeModuleId, other.typeModuleId);
+	}
+	//</editor-fold>
+}
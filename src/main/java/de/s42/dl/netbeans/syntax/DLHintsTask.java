@@ -25,15 +25,16 @@
 //</editor-fold>
 package de.s42.dl.netbeans.syntax;
 
-import static de.s42.dl.language.DLConstants.MIME_TYPE;
 import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
 import de.s42.dl.netbeans.syntax.hints.AbstractDLParsingHint;
+import de.s42.dl.netbeans.syntax.hints.DLHintLayer;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import javax.swing.text.Document;
 import org.netbeans.api.editor.mimelookup.MimeRegistration;
 import org.netbeans.modules.parsing.api.Snapshot;
@@ -48,6 +49,8 @@ import org.netbeans.spi.editor.hints.HintsController;
 import org.openide.filesystems.FileObject;
 
 /**
+ * Publishes all hint layers of a finished parse. The parser publishes the layers of the single tiers earlier already
+ * (see publishHints).
  *
  * @author Benjamin Schiller
  */
@@ -56,17 +59,58 @@ public class DLHintsTask extends ParserResultTask<DLParserResult>
 
 	private final static Logger log = LogManager.getLogger(DLHintsTask.class.getName());
 
+	protected volatile boolean cancelled;
+
 	@Override
 	public void run(DLParserResult result, SchedulerEvent event)
 	{
 		assert result != null;
 
+		cancelled = false;
+
+		// Results of cancelled parses are incomplete and outdated
+		if (result.isCancelled()) {
+			return;
+		}
+
+		for (DLHintLayer layer : DLHintLayer.values()) {
+
+			if (cancelled) {
+				return;
+			}
+
+			publishHints(result, layer, () -> cancelled);
+		}
+	}
+
+	/**
+	 * Publishes the hints of one layer of the result to the document of its snapshot if it is opened
+	 *
+	 * @param result
+	 * @param layer
+	 * @param cancelled
+	 */
+	public static void publishHints(DLParserResult result, DLHintLayer layer, BooleanSupplier cancelled)
+	{
+		assert result != null;
+		assert layer != null;
+		assert cancelled != null;
+
 		Document document = result.getSnapshot().getSource().getDocument(false);
+
+		if (document == null || result.isCancelled()) {
+			return;
+		}
+
 		FileObject file = result.getSnapshot().getSource().getFileObject();
 		List<ErrorDescription> hints = new ArrayList<>();
 
-		for (AbstractDLParsingHint hint : result.getDiagnostics()) {
-			
+		for (AbstractDLParsingHint hint : result.getDiagnostics(layer)) {
+
+			if (cancelled.getAsBoolean()) {
+				return;
+			}
+
 			// Check if positions are valid
 			if (hint.getEndPosition() < hint.getStartPosition()) {
 				log.warn("Invalid hint positions for hint", hint.getDescription(), hint.getStartPosition(), hint.getEndPosition());
@@ -81,7 +125,7 @@ public class DLHintsTask extends ParserResultTask<DLParserResult>
 			));			
 		}
 
-		HintsController.setErrors(document, MIME_TYPE + "-hints", hints);
+		HintsController.setErrors(document, layer.layerId, hints);
 	}
 
 	@Override
@@ -99,6 +143,7 @@ public class DLHintsTask extends ParserResultTask<DLParserResult>
 	@Override
 	public void cancel()
 	{
+		cancelled = true;
 	}
 
 	@MimeRegistration(
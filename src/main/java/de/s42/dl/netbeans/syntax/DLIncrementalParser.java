@@ -0,0 +1,628 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.core.BaseDLCore;
+import de.s42.dl.netbeans.semantic.DLSemanticParser;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCache;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheNode;
+import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.syntax.hints.AbstractDLParsingHint;
+import de.s42.dl.netbeans.syntax.hints.DLParsingError;
+import de.s42.dl.netbeans.syntax.hints.DLParsingWarning;
+import de.s42.dl.parser.DLLexer;
+import de.s42.dl.parser.DLParser;
+import de.s42.dl.parser.DLParser.DataContext;
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import org.antlr.v4.runtime.tree.Trees;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+
+/**
+ * Reparses just the top level declarations (types, enums, instances, ...) of a module which are touched by a
+ * modification. Everything else - parse tree, hints and semantic entries - is taken over from the last parse and moved
+ * behind the edited region. If a modification can not be handled safely (it touches requires, changes the declared
+ * type names, contains syntax errors, ...) null is returned and a full parse has to be done.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLIncrementalParser
+{
+
+	private final static Logger log = LogManager.getLogger(DLIncrementalParser.class.getName());
+
+	protected final static DLSemanticCache CACHE = MimeLookup.getLookup(DL_MIME_TYPE).lookup(DLSemanticCache.class);
+
+	protected String moduleId;
+	protected String content;
+	protected DataContext data;
+	protected List<AbstractDLParsingHint> hints;
+	protected DLSemanticCacheNode cacheNode;
+
+	/**
+	 * Remembers the result of a successful static analysis as base for the next incremental parse.
+	 *
+	 * @param moduleId
+	 * @param content
+	 * @param data
+	 * @param hints the hints of the static analysis
+	 * @param cacheNode
+	 */
+	public void update(String moduleId, String content, DataContext data, List<AbstractDLParsingHint> hints, DLSemanticCacheNode cacheNode)
+	{
+		assert moduleId != null;
+		assert content != null;
+		assert data != null;
+		assert hints != null;
+		assert cacheNode != null;
+
+		this.moduleId = moduleId;
+		this.content = content;
+		this.data = data;
+		this.hints = new ArrayList<>(hints);
+		this.cacheNode = cacheNode;
+	}
+
+	public void reset()
+	{
+		moduleId = null;
+		content = null;
+		data = null;
+		hints = null;
+		cacheNode = null;
+	}
+
+	/**
+	 * Parses the modified content incrementally into the given result.
+	 *
+	 * @param result
+	 * @param moduleId
+	 * @param newContent
+	 * @param core
+	 *
+	 * @return the updated parse tree or null if a full parse is required
+	 */
+	public DataContext parse(DLParserResult result, String moduleId, String newContent, BaseDLCore core)
+	{
+		assert result != null;
+		assert moduleId != null;
+		assert newContent != null;
+		assert core != null;
+
+		if (data == null || !moduleId.equals(this.moduleId)) {
+			return null;
+		}
+
+		DLSourceEdit edit = createEdit(newContent);
+
+		if (edit == null) {
+			return null;
+		}
+
+		log.debug("parse", edit);
+
+		// Requires change the references of the node -> do a full parse
+		for (ParserRuleContext statement : getStatements(data)) {
+			if (edit.isInside(getStartOffset(statement), getEndOffset(statement)) && containsRequire(statement)) {
+				return null;
+			}
+		}
+
+		// Hints crossing the region borders can neither be taken over nor be recreated
+		for (AbstractDLParsingHint hint : hints) {
+			int start = hint.getStartPosition();
+			int end = Math.max(hint.getStartPosition(), hint.getEndPosition());
+			if (!edit.isBefore(start, end) && !edit.isBehind(start, end) && !edit.isInside(start, end)) {
+				return null;
+			}
+		}
+
+		// Take over everything before the region
+		for (AbstractDLParsingHint hint : hints) {
+			if (edit.isBefore(hint.getStartPosition(), Math.max(hint.getStartPosition(), hint.getEndPosition()))) {
+				addHint(result, hint, null);
+			}
+		}
+
+		DLSemanticCacheNode node = CACHE.createCacheNode(cacheNode.getKey(), cacheNode.getModule());
+		cacheNode.copyUnchangedReferences(node, edit);
+		cacheNode.copyUnchangedUsages(node, edit);
+		cacheNode.copyUnchangedTypes(node, edit, false);
+
+		// Parse the region itself
+		DataContext regionData = parseRegion(result, moduleId, newContent, edit, node, core);
+
+		if (result.hasSyntaxErrors() || containsRequire(regionData)) {
+			return null;
+		}
+
+		// Take over everything behind the region
+		cacheNode.copyUnchangedTypes(node, edit, true);
+		for (AbstractDLParsingHint hint : hints) {
+			if (edit.isBehind(hint.getStartPosition(), Math.max(hint.getStartPosition(), hint.getEndPosition()))) {
+				addHint(result, hint, edit);
+			}
+		}
+
+		// Added, removed or renamed types might change the validation outside of the region
+		List<String> oldTypeNames = getTypeNames(cacheNode, edit.getRegionStart(), edit.getOldRegionEnd());
+		List<String> newTypeNames = getTypeNames(node, edit.getRegionStart(), edit.getNewRegionEnd());
+		if (!oldTypeNames.equals(newTypeNames)) {
+			return null;
+		}
+
+		DataContext newData = splice(edit, regionData);
+
+		if (newData == null) {
+			return null;
+		}
+
+		CACHE.setCacheNode(node);
+
+		update(moduleId, newContent, newData, result.getDiagnostics(), node);
+
+		return newData;
+	}
+
+	/**
+	 * Finds the region of top level declarations touched by the difference between the last and the new content.
+	 *
+	 * @param newContent
+	 *
+	 * @return the edit or null if the whole document is affected
+	 */
+	protected DLSourceEdit createEdit(String newContent)
+	{
+		assert newContent != null;
+
+		int oldLength = content.length();
+		int newLength = newContent.length();
+		int minLength = Math.min(oldLength, newLength);
+
+		// Find the modified range by skipping the common prefix and suffix
+		int prefix = 0;
+		while (prefix < minLength && content.charAt(prefix) == newContent.charAt(prefix)) {
+			++prefix;
+		}
+
+		int suffix = 0;
+		while (suffix < minLength - prefix && content.charAt(oldLength - 1 - suffix) == newContent.charAt(newLength - 1 - suffix)) {
+			++suffix;
+		}
+
+		// Nothing changed
+		if (prefix == oldLength && prefix == newLength) {
+			return null;
+		}
+
+		int editStart = prefix;
+		int oldEditEnd = oldLength - suffix;
+
+		List<ParserRuleContext> statements = getStatements(data);
+
+		for (ParserRuleContext statement : statements) {
+			if (statement.getStart() == null || statement.getStop() == null) {
+				return null;
+			}
+		}
+
+		// First statement ending at or behind the edit start and last statement starting at or before the edit end
+		int first = statements.size();
+		for (int i = 0; i < statements.size(); ++i) {
+			if (getEndOffset(statements.get(i)) >= editStart) {
+				first = i;
+				break;
+			}
+		}
+
+		int last = -1;
+		for (int i = statements.size() - 1; i >= 0; --i) {
+			if (getStartOffset(statements.get(i)) <= oldEditEnd) {
+				last = i;
+				break;
+			}
+		}
+
+		int regionStart;
+		int oldRegionEnd;
+		if (first <= last) {
+			regionStart = Math.min(getStartOffset(statements.get(first)), editStart);
+			oldRegionEnd = Math.max(getEndOffset(statements.get(last)), oldEditEnd);
+		} // The edit lies in between two statements
+		else {
+			regionStart = (last >= 0) ? getEndOffset(statements.get(last)) : 0;
+			oldRegionEnd = (first < statements.size()) ? getStartOffset(statements.get(first)) : oldLength;
+		}
+
+		// Reparsing the whole document incrementally does not make any sense
+		if (regionStart == 0 && oldRegionEnd == oldLength) {
+			return null;
+		}
+
+		int newRegionEnd = oldRegionEnd + newLength - oldLength;
+
+		// Locate the region start starting from the closest statement start before it
+		int anchorOffset = 0;
+		int anchorLine = 1;
+		int anchorPosition = 0;
+		for (ParserRuleContext statement : statements) {
+			if (getStartOffset(statement) > regionStart) {
+				break;
+			}
+			anchorOffset = getStartOffset(statement);
+			anchorLine = statement.getStart().getLine();
+			anchorPosition = statement.getStart().getCharPositionInLine();
+		}
+
+		int[] start = locate(content, anchorOffset, anchorLine, anchorPosition, regionStart);
+		int[] oldEnd = locate(content, regionStart, start[0], start[1], oldRegionEnd);
+		int[] newEnd = locate(newContent, regionStart, start[0], start[1], newRegionEnd);
+
+		return new DLSourceEdit(
+			regionStart,
+			start[0],
+			start[1],
+			oldRegionEnd,
+			newRegionEnd,
+			oldEnd[0],
+			newEnd[0] - oldEnd[0],
+			newEnd[1] - oldEnd[1]
+		);
+	}
+
+	protected DataContext parseRegion(DLParserResult result, String moduleId, String newContent, DLSourceEdit edit, DLSemanticCacheNode node, BaseDLCore core)
+	{
+		assert result != null;
+		assert moduleId != null;
+		assert newContent != null;
+		assert edit != null;
+		assert node != null;
+		assert core != null;
+
+		String regionContent = newContent.substring(edit.getRegionStart(), edit.getNewRegionEnd());
+
+		// Lex just the region but create tokens with their positions in the whole document
+		DLLexer lexer = new DLLexer(CharStreams.fromString(regionContent));
+		lexer.setTokenFactory(new MovedTokenFactory(edit.getRegionStart()));
+		lexer.setLine(edit.getRegionStartLine());
+		lexer.setCharPositionInLine(edit.getRegionStartPosition());
+
+		return DLSyntaxParser.parseContent(result, lexer, new DLSemanticParser(result, core, moduleId, node, true));
+	}
+
+	/**
+	 * Creates a new data tree out of the unchanged statements before, the reparsed ones of and the moved ones behind the
+	 * region. Validates everything before re-parenting or moving any node, so the last tree stays intact if the splice
+	 * fails.
+	 *
+	 * @param edit
+	 * @param regionData
+	 *
+	 * @return the new tree or null if the edit does not fit to the statements of the last tree
+	 */
+	protected DataContext splice(DLSourceEdit edit, DataContext regionData)
+	{
+		assert edit != null;
+		assert regionData != null;
+
+		List<ParseTree> before = new ArrayList<>();
+		List<ParseTree> region = new ArrayList<>();
+		List<ParseTree> behind = new ArrayList<>();
+
+		for (ParseTree child : getChildren(data)) {
+
+			int start = getStartOffset(child);
+			int end = getEndOffset(child);
+
+			if (edit.isBehind(start, end)) {
+				behind.add(child);
+			} else if (edit.isBefore(start, end)) {
+				before.add(child);
+			} else if (!edit.isInside(start, end)) {
+				return null;
+			}
+		}
+
+		for (ParseTree child : getChildren(regionData)) {
+			if (!isEOF(child)) {
+				region.add(child);
+			}
+		}
+
+		if (before.isEmpty() && region.isEmpty() && behind.isEmpty()) {
+			return null;
+		}
+
+		DataContext spliced = new DataContext(null, data.invokingState);
+
+		for (ParseTree child : before) {
+			addChild(spliced, child);
+		}
+
+		for (ParseTree child : region) {
+			addChild(spliced, child);
+		}
+
+		for (ParseTree child : behind) {
+			moveTokens(child, edit);
+			addChild(spliced, child);
+		}
+
+		spliced.start = getStartToken(spliced.getChild(0));
+		spliced.stop = getStopToken(spliced.getChild(spliced.getChildCount() - 1));
+
+		return spliced;
+	}
+
+	protected static void addChild(DataContext parent, ParseTree child)
+	{
+		assert parent != null;
+		assert child != null;
+
+		if (child instanceof ParserRuleContext) {
+			((ParserRuleContext) child).setParent(parent);
+			parent.addAnyChild(child);
+		} else if (child instanceof TerminalNode) {
+			((TerminalNode) child).setParent(parent);
+			parent.addAnyChild(child);
+		}
+	}
+
+	/**
+	 * Moves all tokens of the given tree by the edit. The text of the tokens gets fixed as they would read it from the old
+	 * input otherwise.
+	 *
+	 * @param tree
+	 * @param edit
+	 */
+	protected static void moveTokens(ParseTree tree, DLSourceEdit edit)
+	{
+		assert tree != null;
+		assert edit != null;
+
+		if (tree instanceof TerminalNode) {
+
+			Token token = ((TerminalNode) tree).getSymbol();
+
+			if (token instanceof CommonToken) {
+
+				CommonToken commonToken = (CommonToken) token;
+				commonToken.setText(commonToken.getText());
+				commonToken.setCharPositionInLine(edit.shiftPosition(commonToken.getLine(), commonToken.getCharPositionInLine()));
+				commonToken.setLine(edit.shiftLine(commonToken.getLine()));
+				commonToken.setStartIndex(edit.shiftOffset(commonToken.getStartIndex()));
+				commonToken.setStopIndex(edit.shiftOffset(commonToken.getStopIndex()));
+			}
+
+			return;
+		}
+
+		for (int i = 0; i < tree.getChildCount(); ++i) {
+			moveTokens(tree.getChild(i), edit);
+		}
+	}
+
+	protected static void addHint(DLParserResult result, AbstractDLParsingHint hint, DLSourceEdit edit)
+	{
+		assert result != null;
+		assert hint != null;
+
+		int startPosition = hint.getStartPosition();
+		int endPosition = hint.getEndPosition();
+		int line = hint.getLine();
+		int positionInLine = hint.getPositionInLine();
+
+		if (edit != null) {
+			startPosition = edit.shiftOffset(startPosition);
+			endPosition = edit.shiftOffset(endPosition);
+			positionInLine = edit.shiftPosition(line, positionInLine);
+			line = edit.shiftLine(line);
+		}
+
+		if (hint instanceof DLParsingError) {
+			result.addError(new DLParsingError(
+				hint.getFile(),
+				hint.getDisplayName(),
+				hint.getDescription(),
+				startPosition,
+				endPosition,
+				line,
+				positionInLine,
+				hint.getParameters()
+			));
+		} else if (hint instanceof DLParsingWarning) {
+			result.addWarning(new DLParsingWarning(
+				hint.getFile(),
+				hint.getDisplayName(),
+				hint.getDescription(),
+				startPosition,
+				endPosition,
+				line,
+				positionInLine,
+				hint.getParameters()
+			));
+		}
+	}
+
+	protected static List<String> getTypeNames(DLSemanticCacheNode node, int startOffset, int endOffset)
+	{
+		assert node != null;
+
+		List<String> typeNames = new ArrayList<>();
+
+		for (Type type : node.getTypes(false)) {
+			if (type.getStartOffset() >= startOffset && type.getEndOffset() <= endOffset) {
+				typeNames.add(type.getIdentifier());
+			}
+		}
+
+		Collections.sort(typeNames);
+
+		return typeNames;
+	}
+
+	/**
+	 * Returns line and position at offset by counting from a known location in the text.
+	 *
+	 * @param text
+	 * @param fromOffset
+	 * @param fromLine
+	 * @param fromPosition
+	 * @param offset
+	 *
+	 * @return [line, position]
+	 */
+	protected static int[] locate(String text, int fromOffset, int fromLine, int fromPosition, int offset)
+	{
+		assert text != null;
+		assert fromOffset <= offset;
+
+		int line = fromLine;
+		int position = fromPosition;
+
+		for (int i = fromOffset; i < offset; ++i) {
+			if (text.charAt(i) == '\n') {
+				line += 1;
+				position = 0;
+			} else {
+				position += 1;
+			}
+		}
+
+		return new int[]{line, position};
+	}
+
+	protected static boolean containsRequire(ParseTree tree)
+	{
+		assert tree != null;
+
+		return !Trees.findAllRuleNodes(tree, DLParser.RULE_require).isEmpty();
+	}
+
+	protected static List<ParseTree> getChildren(ParserRuleContext context)
+	{
+		assert context != null;
+
+		if (context.children == null) {
+			return Collections.emptyList();
+		}
+
+		return context.children;
+	}
+
+	protected static List<ParserRuleContext> getStatements(DataContext context)
+	{
+		assert context != null;
+
+		List<ParserRuleContext> statements = new ArrayList<>();
+
+		for (ParseTree child : getChildren(context)) {
+			if (child instanceof ParserRuleContext) {
+				statements.add((ParserRuleContext) child);
+			}
+		}
+
+		return statements;
+	}
+
+	protected static boolean isEOF(ParseTree tree)
+	{
+		return tree instanceof TerminalNode
+			&& ((TerminalNode) tree).getSymbol().getType() == Token.EOF;
+	}
+
+	protected static Token getStartToken(ParseTree tree)
+	{
+		if (tree instanceof TerminalNode) {
+			return ((TerminalNode) tree).getSymbol();
+		}
+
+		return ((ParserRuleContext) tree).getStart();
+	}
+
+	protected static Token getStopToken(ParseTree tree)
+	{
+		if (tree instanceof TerminalNode) {
+			return ((TerminalNode) tree).getSymbol();
+		}
+
+		return ((ParserRuleContext) tree).getStop();
+	}
+
+	protected static int getStartOffset(ParseTree tree)
+	{
+		return getStartToken(tree).getStartIndex();
+	}
+
+	protected static int getEndOffset(ParseTree tree)
+	{
+		Token start = getStartToken(tree);
+		Token stop = getStopToken(tree);
+
+		// Empty rules have their stop token before the start token
+		return Math.max(start.getStartIndex(), stop.getStopIndex() + 1);
+	}
+
+	/**
+	 * Creates tokens for a lexer which reads just a part of the document but with their offsets in the whole document.
+	 */
+	protected static class MovedTokenFactory extends CommonTokenFactory
+	{
+
+		protected final int offset;
+
+		protected MovedTokenFactory(int offset)
+		{
+			super(true);
+
+			this.offset = offset;
+		}
+
+		@Override
+		public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start, int stop, int line, int charPositionInLine)
+		{
+			CommonToken token = super.create(source, type, text, channel, start, stop, line, charPositionInLine);
+			token.setStartIndex(start + offset);
+			token.setStopIndex(stop + offset);
+
+			return token;
+		}
+	}
+}
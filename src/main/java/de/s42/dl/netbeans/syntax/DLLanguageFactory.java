@@ -42,7 +42,7 @@ public class DLLanguageFactory
 {
 
 	@MimeRegistration(mimeType = DL_MIME_TYPE, service = Language.class)
-	public static final Language<?> getLanguage()
+	public static final Language<DLTokenId> getLanguage()
 	{
 		return LANGUAGE;
 	}
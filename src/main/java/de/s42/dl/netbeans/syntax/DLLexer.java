@@ -29,12 +29,15 @@ import static de.s42.dl.netbeans.syntax.DLTokenId.*;
 import static de.s42.dl.parser.DLLexer.*;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import static org.antlr.v4.runtime.Token.EOF;
-import org.antlr.v4.runtime.misc.IntegerStack;
 import org.netbeans.api.lexer.Token;
 import org.netbeans.spi.lexer.Lexer;
 import org.netbeans.spi.lexer.LexerRestartInfo;
 import org.netbeans.spi.lexer.TokenFactory;
+import org.netbeans.spi.lexer.TokenPropertyProvider;
 
 /**
  *
@@ -43,11 +46,18 @@ import org.netbeans.spi.lexer.TokenFactory;
 public class DLLexer implements Lexer<DLTokenId>
 {
 
+	public final static String ANTLR_TYPE_PROPERTY = "antlrType";
+	public final static String ANTLR_CHANNEL_PROPERTY = "antlrChannel";
+
 	private final static Logger log = LogManager.getLogger(DLLexer.class.getName());
 
+	// The ATN state of a fresh lexer as the lexer does not update it while lexing
+	private final static int DEFAULT_STATE = -1;
+
 	private final TokenFactory<DLTokenId> tokenFactory;
 	private final de.s42.dl.parser.DLLexer lexer;
 	private final DLLexerInputCharStream input;
+	private LexerState lastState;
 
 	public DLLexer(LexerRestartInfo<DLTokenId> info)
 	{
@@ -57,7 +67,8 @@ public class DLLexer implements Lexer<DLTokenId>
 			this.lexer = new de.s42.dl.parser.DLLexer(input);
 			this.lexer.removeErrorListeners();
 			if (info.state() != null) {
-				((LexerState) info.state()).restore(lexer);
+				lastState = (LexerState) info.state();
+				lastState.restore(lexer);
 			}
 			input.markToken();
 		} catch (Throwable ex) {
@@ -75,10 +86,12 @@ public class DLLexer implements Lexer<DLTokenId>
 
 		switch (tokenType) {
 			case EOF:
+				// Give back any lookahead - no characters may remain read at the end of input
+				input.markToken();
 				return null;
 			case WHITESPACES:
 			case NEWLINE:
-				return token(WHITESPACE);
+				return token(WHITESPACE, nextToken);
 			case AT:
 			case COLON:
 			case SEMI_COLON:
@@ -100,7 +113,7 @@ public class DLLexer implements Lexer<DLTokenId>
 			case MUL:
 			case DIV:
 			case POW:
-				return token(OPERATOR);
+				return token(OPERATOR, nextToken);
 			case KEYWORD_ANNOTATION:
 			case KEYWORD_ABSTRACT:
 			case KEYWORD_ALIAS:
@@ -116,31 +129,33 @@ public class DLLexer implements Lexer<DLTokenId>
 			case KEYWORD_TYPE:
 			case KEYWORD_DYNAMIC:
 			case BOOLEAN_LITERAL:
-				return token(KEYWORD);
+				return token(KEYWORD, nextToken);
 			case RESERVED_KEYWORD:
-				return token(ERROR);
+				return token(ERROR, nextToken);
 			case STRING_LITERAL:
-				return token(STRING);
+				return token(STRING, nextToken);
 			case FLOAT_LITERAL:
 			case INTEGER_LITERAL:
-				return token(NUMBER);
+				return token(NUMBER, nextToken);
 			case REF:
-				return token(REFERENCE);
+				return token(REFERENCE, nextToken);
 			case SYMBOL:
-				return token(IDENTIFIER);
+				return token(IDENTIFIER, nextToken);
 			case MULTILINE_COMMENT:
 			case SINGLELINE_COMMENT:
-				return token(COMMENT);
+				return token(COMMENT, nextToken);
 			case UNKNOWN:
 			default:
-				return token(ERROR);
+				return token(ERROR, nextToken);
 		}
 	}
 
 	@Override
 	public Object state()
 	{
-		return new LexerState(lexer);
+		lastState = LexerState.of(lexer, lastState);
+
+		return lastState;
 	}
 
 	@Override
@@ -148,38 +163,201 @@ public class DLLexer implements Lexer<DLTokenId>
 	{
 	}
 
-	private Token<DLTokenId> token(DLTokenId id)
+	/**
+	 * Creates the NetBeans token and keeps the ANTLR type and channel as token properties. This allows to feed the
+	 * tokens of the token hierarchy into the DL parser without lexing again (see DLTokenHierarchySource).
+	 *
+	 * @param id
+	 * @param antlrToken
+	 *
+	 * @return
+	 */
+	private Token<DLTokenId> token(DLTokenId id, org.antlr.v4.runtime.Token antlrToken)
 	{
 		input.markToken();
-		return tokenFactory.createToken(id);
+		return tokenFactory.createPropertyToken(
+			id,
+			input.readLength(),
+			AntlrTokenProperties.get(antlrToken.getType(), antlrToken.getChannel())
+		);
+	}
+
+	/**
+	 * Returns the ANTLR token type of a token created by this lexer
+	 *
+	 * @param token
+	 *
+	 * @return the type or UNKNOWN if the token does not contain it
+	 */
+	public static int getAntlrType(Token<DLTokenId> token)
+	{
+		assert token != null;
+
+		Object type = token.getProperty(ANTLR_TYPE_PROPERTY);
+
+		return (type instanceof Integer) ? (Integer) type : UNKNOWN;
+	}
+
+	/**
+	 * Returns the ANTLR channel of a token created by this lexer
+	 *
+	 * @param token
+	 *
+	 * @return the channel or the default channel if the token does not contain it
+	 */
+	public static int getAntlrChannel(Token<DLTokenId> token)
+	{
+		assert token != null;
+
+		Object channel = token.getProperty(ANTLR_CHANNEL_PROPERTY);
+
+		return (channel instanceof Integer) ? (Integer) channel : org.antlr.v4.runtime.Token.DEFAULT_CHANNEL;
+	}
+
+	/**
+	 * Immutable provider of the ANTLR properties of a token. There is just one instance for each type and channel.
+	 */
+	private static class AntlrTokenProperties implements TokenPropertyProvider<DLTokenId>
+	{
+
+		private final static Map<Integer, AntlrTokenProperties> PROPERTIES = new ConcurrentHashMap<>();
+
+		final Integer type;
+		final Integer channel;
+
+		AntlrTokenProperties(int type, int channel)
+		{
+			this.type = type;
+			this.channel = channel;
+		}
+
+		static AntlrTokenProperties get(int type, int channel)
+		{
+			return PROPERTIES.computeIfAbsent((channel << 16) | (type & 0xFFFF), (key) -> {
+				return new AntlrTokenProperties(type, channel);
+			});
+		}
+
+		@Override
+		public Object getValue(Token<DLTokenId> token, Object key)
+		{
+			if (ANTLR_TYPE_PROPERTY.equals(key)) {
+				return type;
+			}
+
+			if (ANTLR_CHANNEL_PROPERTY.equals(key)) {
+				return channel;
+			}
+
+			return null;
+		}
 	}
 
-	private static class LexerState
+	/**
+	 * Immutable and interned state of the ANTLR lexer between tokens. The default state (default mode, no pushed modes)
+	 * is represented by null. All other states are canonical instances, so restoring and comparing states is cheap and
+	 * lexing does not allocate per token.
+	 */
+	private static final class LexerState
 	{
 
+		private final static Map<LexerState, LexerState> STATES = new ConcurrentHashMap<>();
+
 		final int state;
 		final int mode;
-		final IntegerStack modes;
+		final int[] modes;
+		final int hash;
+
+		private LexerState(int state, int mode, int[] modes)
+		{
+			this.state = state;
+			this.mode = mode;
+			this.modes = modes;
+			this.hash = 31 * (31 * state + mode) + Arrays.hashCode(modes);
+		}
 
-		LexerState(de.s42.dl.parser.DLLexer lexer)
+		/**
+		 * Returns the canonical state of the given lexer
+		 *
+		 * @param lexer
+		 * @param last the last returned state which is reused if it still matches
+		 *
+		 * @return null for the default state
+		 */
+		static LexerState of(de.s42.dl.parser.DLLexer lexer, LexerState last)
 		{
-			this.state = lexer.getState();
+			if (isDefault(lexer)) {
+				return null;
+			}
+
+			if (last != null && last.matches(lexer)) {
+				return last;
+			}
+
+			LexerState probe = new LexerState(lexer.getState(), lexer._mode, lexer._modeStack.toArray());
+
+			return STATES.computeIfAbsent(probe, (key) -> key);
+		}
 
-			this.mode = lexer._mode;
-			this.modes = new IntegerStack(lexer._modeStack);
+		static boolean isDefault(de.s42.dl.parser.DLLexer lexer)
+		{
+			return lexer._mode == de.s42.dl.parser.DLLexer.DEFAULT_MODE
+				&& lexer._modeStack.isEmpty()
+				&& lexer.getState() == DEFAULT_STATE;
 		}
 
-		public void restore(de.s42.dl.parser.DLLexer lexer)
+		boolean matches(de.s42.dl.parser.DLLexer lexer)
+		{
+			if (state != lexer.getState()
+				|| mode != lexer._mode
+				|| modes.length != lexer._modeStack.size()) {
+				return false;
+			}
+
+			for (int i = 0; i < modes.length; ++i) {
+				if (modes[i] != lexer._modeStack.get(i)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		void restore(de.s42.dl.parser.DLLexer lexer)
 		{
 			lexer.setState(state);
-			lexer._modeStack.addAll(modes);
+			lexer._modeStack.clear();
+			for (int pushedMode : modes) {
+				lexer._modeStack.push(pushedMode);
+			}
 			lexer._mode = mode;
 		}
 
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof LexerState)) {
+				return false;
+			}
+			final LexerState other = (LexerState) obj;
+			return state == other.state
+				&& mode == other.mode
+				&& Arrays.equals(modes, other.modes);
+		}
+
 		@Override
 		public String toString()
 		{
-			return String.valueOf(state);
+			return state + ":" + mode + Arrays.toString(modes);
 		}
 	}
 }
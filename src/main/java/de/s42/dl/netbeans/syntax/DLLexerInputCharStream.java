@@ -27,12 +27,16 @@ package de.s42.dl.netbeans.syntax;
 
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
+import java.util.Arrays;
 import org.antlr.v4.runtime.CharStream;
 import static org.antlr.v4.runtime.IntStream.UNKNOWN_SOURCE_NAME;
 import org.antlr.v4.runtime.misc.Interval;
 import org.netbeans.spi.lexer.LexerInput;
 
 /**
+ * Provides the LexerInput of NetBeans as CharStream for the ANTLR lexer. All characters read from the input since the
+ * start of the current token are kept in a buffer. So LA, seek and getText just index into the buffer and the input is
+ * read exactly once per character. Just on markToken the input gets backed up to the end of the token.
  *
  * @author Benjamin Schiller
  */
@@ -41,40 +45,90 @@ public class DLLexerInputCharStream implements CharStream
 
 	private final static Logger log = LogManager.getLogger(DLLexerInputCharStream.class.getName());
 
+	public final static int INITIAL_BUFFER_SIZE = 256;
+
 	private final LexerInput input;
-	private int tokenMark = Integer.MAX_VALUE;
-	private int index = 0;
+	private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+
+	// Number of characters in the buffer - they start at tokenStart
+	private int buffered;
+
+	// Number of reads from the input since the token start including a read EOF
+	private int reads;
+
+	private int tokenStart;
+	private int index;
+	private int eofIndex = Integer.MAX_VALUE;
 
 	public DLLexerInputCharStream(LexerInput input)
 	{
+		assert input != null;
+
 		this.input = input;
 	}
 
+	/**
+	 * Makes sure the character at the given absolute index is buffered
+	 *
+	 * @param position
+	 *
+	 * @return false if the position is at or behind the end of the input
+	 */
+	private boolean fill(int position)
+	{
+		int required = position - tokenStart + 1;
+
+		while (buffered < required) {
+
+			if (tokenStart + buffered >= eofIndex) {
+				return false;
+			}
+
+			int c = input.read();
+			reads += 1;
+
+			if (c == LexerInput.EOF) {
+				eofIndex = tokenStart + buffered;
+				return false;
+			}
+
+			if (buffered == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+
+			buffer[buffered] = (char) c;
+			buffered += 1;
+		}
+
+		return true;
+	}
+
 	@Override
 	public String getText(Interval intrvl)
 	{
-		if (intrvl.a < tokenMark) {
-			throw new UnsupportedOperationException("Can't read before the last token end: " + tokenMark);
-		}
-		int start = intrvl.a - tokenMark;
-		int end = intrvl.b - tokenMark + 1;
-		int toread = end - start - input.readLength();
-		for (int i = 0; i < toread; i++) {
-			input.read();
+		if (intrvl.a < tokenStart) {
+			throw new UnsupportedOperationException("Can't read before the last token end: " + tokenStart);
 		}
 
-		String ret = String.valueOf(input.readText(0, end - start));
+		fill(intrvl.b);
+
+		int end = Math.min(intrvl.b + 1, tokenStart + buffered);
 
-		if (toread > 0) {
-			input.backup(toread);
+		if (end <= intrvl.a) {
+			return "";
 		}
-		return ret;
+
+		return new String(buffer, intrvl.a - tokenStart, end - intrvl.a);
 	}
 
 	@Override
 	public void consume()
 	{
-		read();
+		if (!fill(index)) {
+			throw new IllegalStateException("Can't consume EOF");
+		}
+
+		index += 1;
 	}
 
 	@Override
@@ -84,17 +138,17 @@ public class DLLexerInputCharStream implements CharStream
 			throw new UnsupportedOperationException("Can't LA with 0");
 		}
 
-		int c = 0;
-		if (count > 0) {
-			for (int i = 0; i < count; i++) {
-				c = read();
-			}
-			backup(count);
-		} else {
-			backup(count);
-			c = read();
+		int position = (count > 0) ? index + count - 1 : index + count;
+
+		if (position < tokenStart) {
+			throw new UnsupportedOperationException("Can't read before the last token end: " + tokenStart);
+		}
+
+		if (!fill(position)) {
+			return EOF;
 		}
-		return c;
+
+		return buffer[position - tokenStart];
 	}
 
 	@Override
@@ -103,9 +157,23 @@ public class DLLexerInputCharStream implements CharStream
 		return -1;
 	}
 
+	/**
+	 * Marks the current index as end of the token to be created. Backs up the input by everything read ahead, so the
+	 * read length of the input matches the token.
+	 */
 	public void markToken()
 	{
-		tokenMark = index;
+		fill(index - 1);
+
+		int excess = reads - (index - tokenStart);
+
+		if (excess > 0) {
+			input.backup(excess);
+		}
+
+		tokenStart = index;
+		buffered = 0;
+		reads = 0;
 	}
 
 	@Override
@@ -123,28 +191,11 @@ public class DLLexerInputCharStream implements CharStream
 	@Override
 	public void seek(int i)
 	{
-		if (i < index()) {
-			backup(index() - i);
-		} else {
-			while (index() < i) {
-				if (read() == LexerInput.EOF) {
-					break;
-				}
-			}
+		if (i < tokenStart) {
+			throw new UnsupportedOperationException("Can't seek before the last token end: " + tokenStart);
 		}
-	}
 
-	private int read()
-	{
-		int ret = input.read();
-		index += 1;
-		return ret;
-	}
-
-	private void backup(int count)
-	{
-		index -= count;
-		input.backup(count);
+		index = Math.min(i, eofIndex);
 	}
 
 	@Override
@@ -27,11 +27,15 @@ package de.s42.dl.netbeans.syntax;
 
 import de.s42.dl.DLModule;
 import de.s42.dl.netbeans.syntax.hints.AbstractDLParsingHint;
+import de.s42.dl.netbeans.syntax.hints.DLHintLayer;
 import de.s42.dl.netbeans.syntax.hints.DLParsingError;
 import de.s42.dl.netbeans.syntax.hints.DLParsingWarning;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.Token;
 import org.netbeans.modules.csl.spi.ParserResult;
@@ -46,13 +50,87 @@ public class DLParserResult extends ParserResult
 {
 
 	protected final List<AbstractDLParsingHint> hints = new ArrayList<>();
+	protected final Map<DLHintLayer, List<AbstractDLParsingHint>> hintsByLayer = new EnumMap<>(DLHintLayer.class);
+	// Layer of the hints added by addWarning and addError
+	protected DLHintLayer layer = DLHintLayer.Semantic;
 	protected DLModule module;
 	protected int warnings;
 	protected int errors;
+	protected int syntaxErrors;
+	protected final AtomicBoolean cancelled;
 
 	public DLParserResult(Snapshot snapshot)
+	{
+		this(snapshot, new AtomicBoolean());
+	}
+
+	/**
+	 * Creates a result for a module which gets parsed while parsing the parent. It shares the snapshot and the cancel
+	 * state of the parent.
+	 *
+	 * @param parent
+	 */
+	public DLParserResult(DLParserResult parent)
+	{
+		this(parent.getSnapshot(), parent.cancelled);
+	}
+
+	protected DLParserResult(Snapshot snapshot, AtomicBoolean cancelled)
 	{
 		super(snapshot);
+
+		assert cancelled != null;
+
+		this.cancelled = cancelled;
+	}
+
+	/**
+	 * Creates a result for a snapshot with the same content as the snapshot of the previous result by taking over its
+	 * hints and module.
+	 *
+	 * @param snapshot
+	 * @param cancelled
+	 * @param previous
+	 */
+	protected DLParserResult(Snapshot snapshot, AtomicBoolean cancelled, DLParserResult previous)
+	{
+		this(snapshot, cancelled);
+
+		assert previous != null;
+
+		hints.addAll(previous.hints);
+		previous.hintsByLayer.forEach((hintLayer, layerHints) -> {
+			hintsByLayer.put(hintLayer, new ArrayList<>(layerHints));
+		});
+		module = previous.module;
+		warnings = previous.warnings;
+		errors = previous.errors;
+		syntaxErrors = previous.syntaxErrors;
+	}
+
+	/**
+	 * Marks the parse of this result as cancelled. The result is stale then and shall not be used by tasks.
+	 */
+	public void cancel()
+	{
+		cancelled.set(true);
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled.get();
+	}
+
+	/**
+	 * Stops the current parsing if this result got cancelled
+	 *
+	 * @throws DLParseCancelledException
+	 */
+	public void checkCancelled() throws DLParseCancelledException
+	{
+		if (cancelled.get()) {
+			throw new DLParseCancelledException();
+		}
 	}
 
 	public boolean addWarning(String message, ParserRuleContext context)
@@ -86,7 +164,7 @@ public class DLParserResult extends ParserResult
 		
 		warnings+=1;
 
-		return hints.add(warning);
+		return addHint(warning, layer);
 	}
 
 	public boolean addError(String message, ParserRuleContext context)
@@ -114,13 +192,75 @@ public class DLParserResult extends ParserResult
 		));
 	}
 
+	/**
+	 * Adds an error which was reported by the lexer or parser itself. Such errors mean the parse tree has been
+	 * recovered and is not suitable for the dynamic analysis.
+	 *
+	 * @param message
+	 * @param startPosition
+	 * @param endPosition
+	 * @param line
+	 * @param positionInLine
+	 *
+	 * @return
+	 */
+	public boolean addSyntaxError(String message, int startPosition, int endPosition, int line, int positionInLine)
+	{
+		syntaxErrors += 1;
+		errors += 1;
+
+		return addHint(new DLParsingError(
+			getSnapshot().getSource().getFileObject(),
+			message,
+			message,
+			startPosition,
+			endPosition,
+			line,
+			positionInLine
+		), DLHintLayer.Syntax);
+	}
+
 	public boolean addError(DLParsingError error)
 	{
 		assert error != null;
 
 		errors+=1;
 		
-		return hints.add(error);
+		return addHint(error, layer);
+	}
+
+	protected boolean addHint(AbstractDLParsingHint hint, DLHintLayer hintLayer)
+	{
+		assert hint != null;
+		assert hintLayer != null;
+
+		hintsByLayer.computeIfAbsent(hintLayer, (l) -> new ArrayList<>()).add(hint);
+
+		return hints.add(hint);
+	}
+
+	/**
+	 * Takes over the hints and the module of a result which was filled by another analysis of the same snapshot. Call
+	 * it after that analysis finished.
+	 *
+	 * @param other
+	 */
+	public void merge(DLParserResult other)
+	{
+		assert other != null;
+		assert other.getSnapshot() == getSnapshot();
+
+		hints.addAll(other.hints);
+		other.hintsByLayer.forEach((hintLayer, layerHints) -> {
+			hintsByLayer.computeIfAbsent(hintLayer, (l) -> new ArrayList<>()).addAll(layerHints);
+		});
+		warnings += other.warnings;
+		errors += other.errors;
+		syntaxErrors += other.syntaxErrors;
+
+		if (other.module != null) {
+			module = other.module;
+		}
 	}
 
 	@Override
@@ -137,6 +277,30 @@ public class DLParserResult extends ParserResult
 		return Collections.unmodifiableList(hints);
 	}
 
+	public List<AbstractDLParsingHint> getDiagnostics(DLHintLayer hintLayer)
+	{
+		assert hintLayer != null;
+
+		return Collections.unmodifiableList(hintsByLayer.getOrDefault(hintLayer, Collections.emptyList()));
+	}
+
+	public DLHintLayer getLayer()
+	{
+		return layer;
+	}
+
+	/**
+	 * Sets the layer of the hints added from now on. Syntax errors always go to the syntax layer.
+	 *
+	 * @param layer
+	 */
+	public void setLayer(DLHintLayer layer)
+	{
+		assert layer != null;
+
+		this.layer = layer;
+	}
+
 	public DLModule getModule()
 	{
 		return module;
@@ -171,4 +335,14 @@ public class DLParserResult extends ParserResult
 	{
 		return errors > 0;
 	}
+
+	public int getSyntaxErrorCount()
+	{
+		return syntaxErrors;
+	}
+
+	public boolean hasSyntaxErrors()
+	{
+		return syntaxErrors > 0;
+	}
 }
@@ -0,0 +1,156 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCache;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheNode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+
+/**
+ * Identifies the input of a parse - the content of the module and the state of all modules it requires transitively.
+ * If the fingerprint of a new snapshot matches the last one, the last result can be reused. The content is identified
+ * by its hash and length only. The required modules are unchanged as long as the generation of the cache did not
+ * change or their cache nodes are still the same - changes of their files on disk remove their nodes from the cache,
+ * so no file has to be checked.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSnapshotFingerprint
+{
+
+	protected final static DLSemanticCache CACHE = MimeLookup.getLookup(DL_MIME_TYPE).lookup(DLSemanticCache.class);
+
+	protected final String moduleId;
+	protected final int contentHash;
+	protected final int contentLength;
+	protected final long generation;
+	protected final DLSemanticCacheNode cacheNode;
+	protected final Map<String, DLSemanticCacheNode> requiredNodes = new HashMap<>();
+
+	protected DLSnapshotFingerprint(String moduleId, String content, DLSemanticCacheNode cacheNode, long generation)
+	{
+		assert moduleId != null;
+		assert content != null;
+		assert cacheNode != null;
+
+		this.moduleId = moduleId;
+		this.contentHash = content.hashCode();
+		this.contentLength = content.length();
+		this.cacheNode = cacheNode;
+		this.generation = generation;
+	}
+
+	/**
+	 * Creates the fingerprint for a just parsed module
+	 *
+	 * @param moduleId
+	 * @param content
+	 *
+	 * @return empty if the module has no cache node
+	 */
+	public static Optional<DLSnapshotFingerprint> create(String moduleId, String content)
+	{
+		assert moduleId != null;
+		assert content != null;
+
+		// Taken first -> a change while collecting the required nodes leads to the slower check next time
+		long generation = CACHE.getGeneration();
+
+		Optional<DLSemanticCacheNode> optNode = CACHE.peekCacheNode(DLSemanticCache.getCacheKey(moduleId));
+
+		if (optNode.isEmpty()) {
+			return Optional.empty();
+		}
+
+		DLSnapshotFingerprint fingerprint = new DLSnapshotFingerprint(moduleId, content, optNode.orElseThrow(), generation);
+
+		for (String key : CACHE.getTransitiveReferencedKeys(fingerprint.cacheNode.getKey())) {
+			fingerprint.requiredNodes.put(key, CACHE.peekCacheNode(key).orElse(null));
+		}
+
+		return Optional.of(fingerprint);
+	}
+
+	/**
+	 * Checks if parsing the given content would lead to the same result
+	 *
+	 * @param moduleId
+	 * @param content
+	 *
+	 * @return
+	 */
+	public boolean matches(String moduleId, String content)
+	{
+		assert moduleId != null;
+		assert content != null;
+
+		if (content.length() != contentLength
+			|| content.hashCode() != contentHash
+			|| !moduleId.equals(this.moduleId)) {
+			return false;
+		}
+
+		// Nothing got published or removed since
+		if (CACHE.getGeneration() == generation) {
+			return true;
+		}
+
+		// Required modules have to be unchanged in the cache (modified in an open editor or changed on disk)
+		for (Map.Entry<String, DLSemanticCacheNode> entry : requiredNodes.entrySet()) {
+			if (CACHE.peekCacheNode(entry.getKey()).orElse(null) != entry.getValue()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Puts the cache node of the fingerprinted parse back into the cache if it has been removed meanwhile
+	 */
+	public void republishCacheNode()
+	{
+		if (!CACHE.hasCacheNode(cacheNode.getKey())) {
+			CACHE.setCacheNode(cacheNode);
+		}
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	public String getModuleId()
+	{
+		return moduleId;
+	}
+
+	public DLSemanticCacheNode getCacheNode()
+	{
+		return cacheNode;
+	}
+	//</editor-fold>
+}
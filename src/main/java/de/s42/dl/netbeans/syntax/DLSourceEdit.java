@@ -0,0 +1,180 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+/**
+ * Describes a region of a document which got replaced by an edit. Everything before the region is unchanged, everything
+ * behind it just moved by the given deltas.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSourceEdit
+{
+
+	protected final int regionStart;
+	protected final int regionStartLine;
+	protected final int regionStartPosition;
+	protected final int oldRegionEnd;
+	protected final int newRegionEnd;
+	protected final int oldRegionEndLine;
+	protected final int lineDelta;
+	protected final int positionDelta;
+
+	public DLSourceEdit(int regionStart, int regionStartLine, int regionStartPosition, int oldRegionEnd, int newRegionEnd, int oldRegionEndLine, int lineDelta, int positionDelta)
+	{
+		assert regionStart >= 0;
+		assert oldRegionEnd >= regionStart;
+		assert newRegionEnd >= regionStart;
+
+		this.regionStart = regionStart;
+		this.regionStartLine = regionStartLine;
+		this.regionStartPosition = regionStartPosition;
+		this.oldRegionEnd = oldRegionEnd;
+		this.newRegionEnd = newRegionEnd;
+		this.oldRegionEndLine = oldRegionEndLine;
+		this.lineDelta = lineDelta;
+		this.positionDelta = positionDelta;
+	}
+
+	/**
+	 * Returns true if the range lies completely before the edited region (old and new document are the same there).
+	 *
+	 * @param startOffset
+	 * @param endOffset
+	 *
+	 * @return
+	 */
+	public boolean isBefore(int startOffset, int endOffset)
+	{
+		return endOffset <= regionStart;
+	}
+
+	/**
+	 * Returns true if the range (in old document offsets) lies completely behind the edited region.
+	 *
+	 * @param startOffset
+	 * @param endOffset
+	 *
+	 * @return
+	 */
+	public boolean isBehind(int startOffset, int endOffset)
+	{
+		return startOffset >= oldRegionEnd;
+	}
+
+	/**
+	 * Returns true if the range (in old document offsets) lies completely within the edited region.
+	 *
+	 * @param startOffset
+	 * @param endOffset
+	 *
+	 * @return
+	 */
+	public boolean isInside(int startOffset, int endOffset)
+	{
+		return startOffset >= regionStart && endOffset <= oldRegionEnd;
+	}
+
+	public int shiftOffset(int offset)
+	{
+		return offset + getOffsetDelta();
+	}
+
+	public int shiftLine(int line)
+	{
+		return line + lineDelta;
+	}
+
+	/**
+	 * Shifts a position in a line. Just the line the region ended in changes its positions.
+	 *
+	 * @param line line in the old document
+	 * @param position
+	 *
+	 * @return
+	 */
+	public int shiftPosition(int line, int position)
+	{
+		if (line == oldRegionEndLine) {
+			return position + positionDelta;
+		}
+
+		return position;
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	public int getRegionStart()
+	{
+		return regionStart;
+	}
+
+	public int getRegionStartLine()
+	{
+		return regionStartLine;
+	}
+
+	public int getRegionStartPosition()
+	{
+		return regionStartPosition;
+	}
+
+	public int getOldRegionEnd()
+	{
+		return oldRegionEnd;
+	}
+
+	public int getNewRegionEnd()
+	{
+		return newRegionEnd;
+	}
+
+	public int getOldRegionEndLine()
+	{
+		return oldRegionEndLine;
+	}
+
+	public int getOffsetDelta()
+	{
+		return newRegionEnd - oldRegionEnd;
+	}
+
+	public int getLineDelta()
+	{
+		return lineDelta;
+	}
+
+	public int getPositionDelta()
+	{
+		return positionDelta;
+	}
+	//</editor-fold>
+
+	@Override
+	public String toString()
+	{
+		return "DLSourceEdit[" + regionStart + " - " + oldRegionEnd + " -> " + newRegionEnd + "]";
+	}
+}
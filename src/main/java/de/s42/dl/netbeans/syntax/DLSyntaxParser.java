@@ -26,34 +26,62 @@
 package de.s42.dl.netbeans.syntax;
 
 import de.s42.dl.core.BaseDLCore;
-import de.s42.dl.core.DefaultCore;
 import de.s42.dl.exceptions.DLException;
 import de.s42.dl.exceptions.DLParserException;
 import de.s42.dl.exceptions.InvalidValue;
 import de.s42.dl.exceptions.ParserException;
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
 import de.s42.dl.netbeans.semantic.DLSemanticParser;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCache;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheListener;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheNode;
+import de.s42.dl.netbeans.syntax.hints.DLHintLayer;
 import de.s42.dl.netbeans.syntax.hints.DLParsingError;
+import de.s42.dl.netbeans.util.DLCoreHelper;
+import de.s42.dl.netbeans.util.DLEvaluationBudget;
+import de.s42.dl.netbeans.util.DLLargeFiles;
+import de.s42.dl.netbeans.util.DLPreferences;
 import de.s42.dl.netbeans.util.FileObjectHelper;
 import de.s42.dl.parser.DLLexer;
 import de.s42.dl.parser.DLParser;
+import de.s42.dl.parser.DLParser.DataContext;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
 import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.event.ChangeListener;
+import javax.swing.text.Document;
 import javax.swing.text.StyledDocument;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+import org.netbeans.lib.editor.util.swing.DocumentUtilities;
 import org.netbeans.modules.parsing.api.Snapshot;
+import org.netbeans.modules.parsing.api.Source;
 import org.netbeans.modules.parsing.api.Task;
 import org.netbeans.modules.parsing.spi.ParseException;
 import org.netbeans.modules.parsing.spi.Parser;
+import org.netbeans.modules.parsing.spi.Parser.CancelReason;
 import org.netbeans.modules.parsing.spi.SourceModificationEvent;
 import org.openide.filesystems.FileObject;
+import org.openide.filesystems.FileUtil;
 import org.openide.text.NbDocument;
+import org.openide.util.ChangeSupport;
+import org.openide.util.RequestProcessor;
 
 /**
  *
@@ -64,26 +92,135 @@ public class DLSyntaxParser extends Parser
 
 	private final static Logger log = LogManager.getLogger(DLSyntaxParser.class.getName());
 
+	private final static DLSemanticCache CACHE = MimeLookup.getLookup(DL_MIME_TYPE).lookup(DLSemanticCache.class);
+
+	static {
+		// Evicted nodes are loaded again by a static parse of their file
+		CACHE.setNodeBuilder(DLSyntaxParser::rebuildCacheNode);
+	}
+
+	// Runs the dynamic analysis of full parses while the semantic analysis walks the same tree
+	private final static RequestProcessor DYNAMIC_ANALYSIS = new RequestProcessor(DLSyntaxParser.class.getName() + ".dynamic",
+		Math.max(1, Runtime.getRuntime().availableProcessors()), false);
+
+	private final DLIncrementalParser incrementalParser = new DLIncrementalParser();
+
+	private final ChangeSupport changeSupport = new ChangeSupport(this);
+
+	private final DLSemanticCacheListener cacheListener = this::nodesInvalidated;
+
+	// Key of the module parsed by this parser
+	private volatile String moduleKey;
+
+	// Set if required modules changed since the last parse
+	private volatile boolean requiresChanged;
+
 	private DLParserResult parserResult;
 
-	public static void parseContent(DLParserResult result, String moduleId, String content, BaseDLCore core)
+	private volatile AtomicBoolean currentCancelled;
+
+	// Large files are not evaluated (see DLLargeFiles)
+	private boolean dynamicEnabled = true;
+
+	private DLSnapshotFingerprint lastFingerprint;
+
+	private DLParserResult lastResult;
+
+	// Version of the document when the current parse started (see createTokenSource)
+	private long documentVersion;
+
+	/**
+	 * Lexes and parses the content once. The semantic analysis is attached as parse listener and the resulting tree
+	 * can be reused for the dynamic analysis.
+	 *
+	 * @param result
+	 * @param moduleId
+	 * @param content
+	 * @param core
+	 *
+	 * @return the parse tree of the content
+	 */
+	public static DataContext parseContent(DLParserResult result, String moduleId, String content, BaseDLCore core)
 	{
 		assert result != null;
 		assert content != null;
 		assert core != null;
 
+		return parseContent(
+			result,
+			new DLLexer(CharStreams.fromString(content)),
+			new DLSemanticParser(result, core, moduleId)
+		);
+	}
+
+	/**
+	 * Parses the tokens of the given source and runs the semantic parser on the resulting tree. The content is parsed in
+	 * the fast SLL prediction mode first. Just if that fails it is parsed again in full LL mode with error reporting.
+	 *
+	 * @param result
+	 * @param tokenSource a lexer or already lexed tokens (see DLTokenHierarchySource)
+	 * @param semanticParser
+	 *
+	 * @return the parse tree of the content
+	 */
+	public static DataContext parseContent(DLParserResult result, TokenSource tokenSource, DLSemanticParser semanticParser)
+	{
+		assert result != null;
+		assert tokenSource != null;
+		assert semanticParser != null;
+
+		DataContext data = parseTree(result, tokenSource);
+
+		// Run the semantic analysis on the complete tree
+		ParseTreeWalker.DEFAULT.walk(semanticParser, data);
+
+		return data;
+	}
+
+	/**
+	 * Parses the tokens of the given source. The content is parsed in the fast SLL prediction mode first. Just if that
+	 * fails it is parsed again in full LL mode with error reporting.
+	 *
+	 * @param result receives the syntax errors
+	 * @param tokenSource a lexer or already lexed tokens (see DLTokenHierarchySource)
+	 *
+	 * @return the parse tree of the content
+	 */
+	public static DataContext parseTree(DLParserResult result, TokenSource tokenSource)
+	{
+		assert result != null;
+		assert tokenSource != null;
+
 		// Setup lexer
-		DLLexer lexer = new DLLexer(CharStreams.fromString(content));
-		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		CommonTokenStream tokens = new CommonTokenStream(tokenSource);
 		DLParser parser = new DLParser(tokens);
-		lexer.removeErrorListeners();
-		lexer.addErrorListener(new DLParserErrorHandler(result));
+		if (tokenSource instanceof Lexer) {
+			((Lexer) tokenSource).removeErrorListeners();
+			((Lexer) tokenSource).addErrorListener(new DLParserErrorHandler(result));
+		}
+
+		DataContext data;
+
+		// Stage 1: SLL without error reporting - bails out on the first syntax error
 		parser.removeErrorListeners();
-		parser.addErrorListener(new DLParserErrorHandler(result));
-		parser.addParseListener(new DLSemanticParser(result, core, moduleId));
+		parser.setErrorHandler(new BailErrorStrategy());
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+		try {
+			data = parser.data();
+		} // Stage 2: Full LL with error recovery and reporting on the already lexed tokens
+		catch (ParseCancellationException ex) {
+
+			tokens.seek(0);
+			parser.reset();
+			parser.addErrorListener(new DLParserErrorHandler(result));
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+
+			data = parser.data();
+		}
 
-		// Process the parser rules
-		parser.data();
+		return data;
 	}
 
 	protected static class DLParserErrorHandler extends BaseErrorListener
@@ -117,7 +254,7 @@ public class DLSyntaxParser extends Parser
 				endPosition = off + 1;
 			}
 
-			parserResult.addError(
+			parserResult.addSyntaxError(
 				message,
 				startPosition,
 				endPosition,
@@ -134,23 +271,106 @@ public class DLSyntaxParser extends Parser
 
 		log.start("DLSyntaxParser.parse");
 
-		parserResult = new DLParserResult(snapshot);
 		final FileObject fileObject = snapshot.getSource().getFileObject();
 		final String moduleId = Path.of(fileObject.getPath()).toAbsolutePath().normalize().toString();
+		moduleKey = DLSemanticCache.getCacheKey(moduleId);
+
+		String dlContent = String.valueOf(snapshot.getText());
+		dynamicEnabled = !DLLargeFiles.isLargeFile(snapshot);
+
+		// A modification after taking the snapshot reschedules the parse anyways
+		Document document = snapshot.getSource().getDocument(false);
+		documentVersion = (document != null) ? DocumentUtilities.getDocumentVersion(document) : -1;
 
-		String dlContent = String.valueOf(parserResult.getSnapshot().getText());
+		// Results based on outdated required modules can not be reused
+		if (requiresChanged) {
+			requiresChanged = false;
+			lastFingerprint = null;
+			incrementalParser.reset();
+		}
+
+		// All results of this parse share one cancel state
+		AtomicBoolean cancelled = new AtomicBoolean();
+		currentCancelled = cancelled;
+
+		// Unchanged content and requires (focus change, save, rescheduling) -> reuse the last result
+		if (lastFingerprint != null && lastResult != null && lastFingerprint.matches(moduleId, dlContent)) {
+			parserResult = new DLParserResult(snapshot, cancelled, lastResult);
+			lastFingerprint.republishCacheNode();
+			pinCacheNodes();
+			log.stopDebug("DLSyntaxParser.parse");
+			return;
+		}
+
+		parserResult = new DLParserResult(snapshot, cancelled);
+
+		try {
 
-		// Do static analysis
-		analyzeStatic(moduleId, dlContent);
+			DataContext data = null;
+
+			// Try to just reparse the declarations touched by the modification
+			if (event != null && event.sourceChanged()) {
+				data = analyzeIncremental(moduleId, dlContent);
+
+				// Do dynamic analysis on the merged parse tree
+				if (data != null) {
+					publishHints(DLHintLayer.Syntax);
+					publishHints(DLHintLayer.Semantic);
+					if (dynamicEnabled) {
+						parserResult.checkCancelled();
+						analyzeDynamic(moduleId, data);
+						publishHints(DLHintLayer.Dynamic);
+					}
+				}
+			}
+
+			// Do static and dynamic analysis - lexes and parses the content once
+			if (data == null) {
+				parserResult.checkCancelled();
+				parserResult = new DLParserResult(snapshot, cancelled);
+				analyzeStatic(moduleId, dlContent);
+			}
 
-		// do dynamic analysis
-		analyzeDynamic(moduleId, dlContent);
+			parserResult.checkCancelled();
+
+			// Remember the completed result for unchanged snapshots
+			lastResult = parserResult;
+			lastFingerprint = DLSnapshotFingerprint.create(moduleId, dlContent).orElse(null);
+			pinCacheNodes();
+		} catch (DLParseCancelledException ex) {
+			log.debug("parse", "Cancelled", moduleId);
+		}
 
 		log.stopDebug("DLSyntaxParser.parse");
 	}
 
+	@Override
+	public void cancel(CancelReason reason, SourceModificationEvent event)
+	{
+		// The content is outdated -> stop working on it
+		if (reason == CancelReason.SOURCE_MODIFICATION_EVENT) {
+			cancel();
+		}
+	}
+
+	@Override
+	public void cancel()
+	{
+		AtomicBoolean cancelled = currentCancelled;
+
+		if (cancelled != null) {
+			cancelled.set(true);
+		}
+	}
+
 	protected void createErrorHintFromException(Exception ex)
 	{
+		createErrorHintFromException(parserResult, ex);
+	}
+
+	protected void createErrorHintFromException(DLParserResult parserResult, Exception ex)
+	{
+		assert parserResult != null;
 		assert ex != null;
 
 		FileObject fileObject = parserResult.getSnapshot().getSource().getFileObject();
@@ -209,47 +429,415 @@ public class DLSyntaxParser extends Parser
 		}
 	}
 
-	protected void analyzeStatic(String moduleId, String content)
+	/**
+	 * Parses the content and runs the semantic analysis on it. If the tree is free of syntax errors the dynamic
+	 * analysis runs on a worker at the same time. Its hints are collected in an own result and merged after the
+	 * semantic analysis is done.
+	 *
+	 * @param moduleId
+	 * @param content
+	 *
+	 * @return the parse tree if it can be used for the dynamic analysis, null otherwise
+	 */
+	protected DataContext analyzeStatic(String moduleId, String content)
 	{
 		assert moduleId != null;
 		assert content != null;
 
 		log.start("analyzeStatic");
 
+		DataContext data = null;
+		DLSemanticParser semanticParser = null;
+		BaseDLCore core = null;
+		DLParserResult dynamicResult = null;
+		DLEvaluationBudget dynamicBudget = null;
+		RequestProcessor.Task dynamicTask = null;
+		boolean staticFailed = false;
+
 		try {
 
-			BaseDLCore core = new BaseDLCore(true);
-			DefaultCore.loadResolvers(core);
-			core.getPathResolver().addResolveDirectory(Path.of(parserResult.getSnapshot().getSource().getFileObject().getPath()).getParent());
+			core = DLCoreHelper.acquireStaticCore(getResolveDirectory());
+
+			semanticParser = new DLSemanticParser(parserResult, core, moduleId);
+			data = parseTree(parserResult, createTokenSource(content));
+
+			// Syntax errors do not have to wait for the slower tiers
+			publishHints(DLHintLayer.Syntax);
+
+			// Both walks just read the tree -> let the dynamic analysis evaluate it meanwhile
+			if (dynamicEnabled && !parserResult.hasSyntaxErrors()) {
+				DataContext tree = data;
+				DLParserResult result = new DLParserResult(parserResult);
+				DLEvaluationBudget budget = createDynamicBudget(result);
+				dynamicResult = result;
+				dynamicBudget = budget;
+				dynamicTask = DYNAMIC_ANALYSIS.post(() -> {
+					try {
+						analyzeDynamic(result, moduleId, tree, budget);
+					} catch (DLParseCancelledException ex) {
+						// The parse checks for cancellation itself
+					}
+				});
+			}
 
-			parseContent(parserResult, moduleId, content, core);
+			ParseTreeWalker.DEFAULT.walk(semanticParser, data);
+			publishHints(DLHintLayer.Semantic);
 
+		} catch (DLParseCancelledException ex) {
+			throw ex;
 		} // Special handling for reserved keyword - this might to be changed in DL parsing as this induces issues -> Should add errors but not throw
 		catch (InvalidValue | RuntimeException ex) {
 
+			staticFailed = true;
 			createErrorHintFromException(ex);
+		} finally {
+			if (core != null) {
+				DLCoreHelper.releaseStaticCore(core);
+			}
+			log.stopDebug("analyzeStatic");
+		}
+
+		// A recovered tree would just repeat the syntax errors in the dynamic analysis
+		// and is no valid base for incremental parsing
+		if (data == null || parserResult.hasSyntaxErrors()) {
+			incrementalParser.reset();
+			return null;
 		}
 
-		log.stopDebug("analyzeStatic");
+		boolean finished = true;
+		boolean workerStopped = true;
+
+		if (dynamicTask != null) {
+
+			finished = false;
+
+			try {
+				finished = waitForDynamicAnalysis(dynamicTask, dynamicBudget);
+			} finally {
+				// Nobody reads the worker result anymore -> do not let it start or stop it at its next check
+				if (!finished) {
+					dynamicBudget.abandon();
+					workerStopped = dynamicTask.cancel() || waitForAbandonedWorker(dynamicTask);
+				}
+				// The incremental parser modifies the tokens and parent links of the tree -> it must not get a tree which
+				// the abandoned worker might still walk
+				if (!workerStopped) {
+					incrementalParser.reset();
+				}
+			}
+		}
+
+		// A failed semantic walk leaves a partial cache node and an exception hint - no valid base for incremental parsing
+		if (staticFailed) {
+			incrementalParser.reset();
+		} // The incremental parser keeps the static hints only
+		else if (workerStopped) {
+			incrementalParser.update(moduleId, content, data, parserResult.getDiagnostics(), semanticParser.getCacheNode());
+		}
+
+		if (dynamicTask != null) {
 
+			if (finished) {
+				parserResult.merge(dynamicResult);
+			} else {
+				log.debug("analyzeStatic", "Dynamic analysis timed out", moduleId);
+				addBudgetExceededWarning(parserResult, "took more than " + dynamicBudget.getTimeLimitMillis() + " ms");
+			}
+			publishHints(DLHintLayer.Dynamic);
+		}
+
+		return data;
 	}
 
-	protected void analyzeDynamic(String moduleId, String content)
+	/**
+	 * Reparses just the top level declarations touched by the last modification and merges them with the unchanged
+	 * parts of the last parse.
+	 *
+	 * @param moduleId
+	 * @param content
+	 *
+	 * @return the updated parse tree or null if the modification could not be handled incrementally
+	 */
+	protected DataContext analyzeIncremental(String moduleId, String content)
 	{
 		assert moduleId != null;
 		assert content != null;
 
+		log.start("analyzeIncremental");
+
+		BaseDLCore core = null;
+
+		try {
+
+			core = DLCoreHelper.acquireStaticCore(getResolveDirectory());
+
+			return incrementalParser.parse(parserResult, moduleId, content, core);
+
+		} catch (DLParseCancelledException ex) {
+			throw ex;
+		} catch (InvalidValue | RuntimeException ex) {
+
+			// Fall back to a full parse
+			log.debug("analyzeIncremental", "Falling back to full parse", ex.getMessage());
+			incrementalParser.reset();
+			return null;
+		} finally {
+			if (core != null) {
+				DLCoreHelper.releaseStaticCore(core);
+			}
+			log.stopDebug("analyzeIncremental");
+		}
+	}
+
+	/**
+	 * Uses the tokens of the editor token hierarchy if the document still contains the content, lexes the content
+	 * otherwise.
+	 *
+	 * @param content
+	 *
+	 * @return
+	 */
+	protected TokenSource createTokenSource(String content)
+	{
+		assert content != null;
+
+		Document document = parserResult.getSnapshot().getSource().getDocument(false);
+
+		if (document != null) {
+
+			Optional<TokenSource> optTokenSource = DLTokenHierarchySource.copy(document, documentVersion, content.length());
+
+			if (optTokenSource.isPresent()) {
+				return optTokenSource.orElseThrow();
+			}
+		}
+
+		return new DLLexer(CharStreams.fromString(content));
+	}
+
+	/**
+	 * Rebuilds the cache node of an evicted module by a static parse of its file
+	 *
+	 * @param moduleId
+	 */
+	public static void rebuildCacheNode(String moduleId)
+	{
+		rebuildCacheNode(moduleId, new AtomicBoolean());
+	}
+
+	/**
+	 * Builds the cache node of a module by a static parse of its file. Stops as soon as cancelled is set.
+	 *
+	 * @param moduleId
+	 * @param cancelled
+	 */
+	public static void rebuildCacheNode(String moduleId, AtomicBoolean cancelled)
+	{
+		assert moduleId != null;
+		assert cancelled != null;
+
+		FileObject fileObject = FileUtil.toFileObject(Path.of(moduleId).toFile());
+
+		// Just modules loaded from files can be rebuilt
+		if (fileObject == null) {
+			return;
+		}
+
+		log.start("rebuildCacheNode");
+
+		BaseDLCore core = null;
+
+		try {
+
+			Snapshot snapshot = Source.create(fileObject).createSnapshot();
+			DLParserResult result = new DLParserResult(snapshot, cancelled);
+
+			core = DLCoreHelper.acquireStaticCore(Path.of(moduleId).getParent());
+
+			parseContent(result, moduleId, String.valueOf(snapshot.getText()), core);
+		} catch (DLParseCancelledException ex) {
+			log.debug("rebuildCacheNode", "Cancelled", moduleId);
+		} catch (InvalidValue | RuntimeException ex) {
+			log.debug("rebuildCacheNode", "Could not rebuild", moduleId, ex.getMessage());
+		} finally {
+			if (core != null) {
+				DLCoreHelper.releaseStaticCore(core);
+			}
+			log.stopDebug("rebuildCacheNode");
+		}
+	}
+
+	/**
+	 * Pins the node of this module and its direct requires so they do not get evicted while the document is open
+	 */
+	protected void pinCacheNodes()
+	{
+		String key = moduleKey;
+
+		if (key == null) {
+			return;
+		}
+
+		Set<String> keys = new HashSet<>();
+		keys.add(key);
+
+		Optional<DLSemanticCacheNode> optNode = CACHE.peekCacheNode(key);
+		if (optNode.isPresent()) {
+			keys.addAll(optNode.orElseThrow().getReferencedKeys());
+		}
+
+		CACHE.pin(this, keys);
+	}
+
+	/**
+	 * Shows the hints of a finished tier in the editor before the whole parse is done. DLHintsTask publishes all layers
+	 * again once the parse is complete.
+	 *
+	 * @param layer
+	 */
+	protected void publishHints(DLHintLayer layer)
+	{
+		assert layer != null;
+
+		DLParserResult result = parserResult;
+		DLHintsTask.publishHints(result, layer, result::isCancelled);
+	}
+
+	protected Path getResolveDirectory()
+	{
+		return Path.of(parserResult.getSnapshot().getSource().getFileObject().getPath()).getParent();
+	}
+
+	/**
+	 * Waits for the dynamic analysis at most for the time limit of its evaluation. The limit counts from the start of
+	 * the evaluation - a busy pool delays the start but does not use up the limit.
+	 *
+	 * @param dynamicTask
+	 * @param budget
+	 *
+	 * @return false if the analysis did not finish in time
+	 */
+	protected boolean waitForDynamicAnalysis(RequestProcessor.Task dynamicTask, DLEvaluationBudget budget)
+	{
+		assert dynamicTask != null;
+		assert budget != null;
+
+		long timeLimit = budget.getTimeLimitMillis();
+
+		try {
+			while (!budget.isStarted()) {
+
+				if (dynamicTask.waitFinished(DLEvaluationBudget.WATCHDOG_INTERVAL)) {
+					break;
+				}
+
+				parserResult.checkCancelled();
+			}
+
+			if (timeLimit <= 0) {
+				dynamicTask.waitFinished();
+				return !parserResult.isCancelled();
+			}
+
+			boolean finished = dynamicTask.waitFinished(Math.max(1, timeLimit - budget.getElapsedMillis()));
+
+			parserResult.checkCancelled();
+
+			return finished;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	/**
+	 * Gives an abandoned worker one watchdog interval to reach its next budget check
+	 *
+	 * @param dynamicTask
+	 *
+	 * @return true if the worker stopped
+	 */
+	protected static boolean waitForAbandonedWorker(RequestProcessor.Task dynamicTask)
+	{
+		assert dynamicTask != null;
+
+		try {
+			return dynamicTask.waitFinished(DLEvaluationBudget.WATCHDOG_INTERVAL);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	protected DLEvaluationBudget createDynamicBudget(DLParserResult parserResult)
+	{
+		assert parserResult != null;
+
+		// The evaluation may instantiate arbitrary types -> stop it if it takes too long or allocates too much
+		return new DLEvaluationBudget(
+			parserResult::isCancelled,
+			DLPreferences.getDynamicTimeLimit(),
+			DLPreferences.getDynamicAllocationLimit()
+		);
+	}
+
+	protected void addBudgetExceededWarning(DLParserResult parserResult, String reason)
+	{
+		assert parserResult != null;
+		assert reason != null;
+
+		DLHintLayer previousLayer = parserResult.getLayer();
+		parserResult.setLayer(DLHintLayer.Dynamic);
+		parserResult.addWarning("Dynamic analysis skipped: budget exceeded - evaluation " + reason, 0, 0, 0, 0);
+		parserResult.setLayer(previousLayer);
+	}
+
+	protected void analyzeDynamic(String moduleId, DataContext data)
+	{
+		analyzeDynamic(parserResult, moduleId, data);
+	}
+
+	protected void analyzeDynamic(DLParserResult parserResult, String moduleId, DataContext data)
+	{
+		analyzeDynamic(parserResult, moduleId, data, createDynamicBudget(parserResult));
+	}
+
+	protected void analyzeDynamic(DLParserResult parserResult, String moduleId, DataContext data, DLEvaluationBudget budget)
+	{
+		assert parserResult != null;
+		assert moduleId != null;
+		assert data != null;
+		assert budget != null;
+
+		// Timed out before the pool got to it
+		if (budget.isAbandoned()) {
+			return;
+		}
+
 		log.start("analyzeDynamic");
 
+		parserResult.setLayer(DLHintLayer.Dynamic);
+
 		try {
 
-			parserResult.setModule(FileObjectHelper.parseModule(moduleId, content));
+			budget.start();
+			parserResult.setModule(FileObjectHelper.evaluateModule(moduleId, data, budget));
+		} catch (DLParseCancelledException ex) {
+
+			if (!budget.isExceeded() || parserResult.isCancelled()) {
+				throw ex;
+			}
+
+			// Keep the static results and just tell why the dynamic ones are missing
+			log.debug("analyzeDynamic", "Budget exceeded", moduleId, budget.getExceededReason());
+			addBudgetExceededWarning(parserResult, budget.getExceededReason());
 		} catch (RuntimeException | DLException ex) {
 
-			createErrorHintFromException(ex);
+			createErrorHintFromException(parserResult, ex);
+		} finally {
+			budget.stop();
+			log.stopDebug("analyzeDynamic");
 		}
-
-		log.stopDebug("analyzeDynamic");
 	}
 
 	@Override
@@ -260,15 +848,52 @@ public class DLSyntaxParser extends Parser
 		return parserResult;
 	}
 
+	/**
+	 * Requests a new parse if a module required by the module of this parser got invalid. The keys just contain the
+	 * dependents of changed modules, so changes of the own module (i.e. saving it) do not lead to a reparse.
+	 *
+	 * @param keys
+	 */
+	protected void nodesInvalidated(Set<String> keys)
+	{
+		assert keys != null;
+
+		String key = moduleKey;
+
+		if (key == null || !keys.contains(key)) {
+			return;
+		}
+
+		log.debug("nodesInvalidated", key);
+
+		requiresChanged = true;
+		changeSupport.fireChange();
+	}
+
 	@Override
 	public void addChangeListener(ChangeListener cl)
 	{
-		// do nothing
+		assert cl != null;
+
+		synchronized (changeSupport) {
+			if (!changeSupport.hasListeners()) {
+				CACHE.addCacheListener(cacheListener);
+			}
+			changeSupport.addChangeListener(cl);
+		}
 	}
 
 	@Override
 	public void removeChangeListener(ChangeListener cl)
 	{
-		// do nothing
+		assert cl != null;
+
+		synchronized (changeSupport) {
+			changeSupport.removeChangeListener(cl);
+			if (!changeSupport.hasListeners()) {
+				CACHE.removeCacheListener(cacheListener);
+				CACHE.unpin(this);
+			}
+		}
 	}
 }
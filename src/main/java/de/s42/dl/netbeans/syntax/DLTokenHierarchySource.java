@@ -0,0 +1,227 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.swing.text.Document;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenFactory;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+import org.netbeans.api.lexer.TokenHierarchy;
+import org.netbeans.api.lexer.TokenSequence;
+import org.netbeans.lib.editor.util.swing.DocumentUtilities;
+
+/**
+ * ANTLR token source which reads the tokens already lexed by the NetBeans token hierarchy of a document. The ANTLR type
+ * and channel are taken from the properties the DLLexer stores in the tokens.
+ *
+ * The token sequence has to be read under the lock of the document it belongs to.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLTokenHierarchySource implements TokenSource
+{
+
+	private final static Logger log = LogManager.getLogger(DLTokenHierarchySource.class.getName());
+
+	protected final TokenSequence<DLTokenId> tokens;
+	protected final Pair<TokenSource, CharStream> source;
+	protected TokenFactory<?> tokenFactory = CommonTokenFactory.DEFAULT;
+	protected int line = 1;
+	protected int charPositionInLine;
+	protected int offset;
+
+	public DLTokenHierarchySource(TokenSequence<DLTokenId> tokens)
+	{
+		assert tokens != null;
+
+		this.tokens = tokens;
+		this.source = new Pair<>(this, null);
+
+		tokens.moveStart();
+	}
+
+	/**
+	 * Creates a token source on the token hierarchy of the given document. Has to be called and consumed under the lock
+	 * of the document.
+	 *
+	 * @param document
+	 *
+	 * @return empty if the document has no active DL token hierarchy
+	 */
+	public static Optional<TokenSource> create(Document document)
+	{
+		assert document != null;
+
+		TokenHierarchy<Document> hierarchy = TokenHierarchy.get(document);
+
+		if (hierarchy == null || !hierarchy.isActive()) {
+			return Optional.empty();
+		}
+
+		TokenSequence<DLTokenId> tokens = hierarchy.tokenSequence(DLLanguageFactory.getLanguage());
+
+		if (tokens == null) {
+			return Optional.empty();
+		}
+
+		return Optional.of(new DLTokenHierarchySource(tokens));
+	}
+
+	/**
+	 * Copies the tokens of the given document into a token source which can be consumed without holding any lock.
+	 * The tokens are just copied if the document still has the expected version and length, so the document text does
+	 * not have to be copied and compared.
+	 *
+	 * @param document
+	 * @param expectedVersion version of the document (see DocumentUtilities.getDocumentVersion) the tokens have to
+	 * belong to
+	 * @param expectedLength length of the text the tokens have to belong to
+	 *
+	 * @return empty if there is no active hierarchy or the document changed
+	 */
+	public static Optional<TokenSource> copy(Document document, long expectedVersion, int expectedLength)
+	{
+		assert document != null;
+
+		List<Token> result = new ArrayList<>();
+		boolean[] valid = new boolean[1];
+
+		document.render(() -> {
+
+			if (DocumentUtilities.getDocumentVersion(document) != expectedVersion
+				|| document.getLength() != expectedLength) {
+				return;
+			}
+
+			Optional<TokenSource> optSource = create(document);
+
+			if (optSource.isEmpty()) {
+				return;
+			}
+
+			TokenSource tokenSource = optSource.orElseThrow();
+			Token token;
+			do {
+				token = tokenSource.nextToken();
+				result.add(token);
+			} while (token.getType() != Token.EOF);
+
+			valid[0] = true;
+		});
+
+		if (!valid[0]) {
+			log.debug("copy", "Token hierarchy not usable");
+			return Optional.empty();
+		}
+
+		return Optional.of(new ListTokenSource(result));
+	}
+
+	@Override
+	public Token nextToken()
+	{
+		if (!tokens.moveNext()) {
+			return tokenFactory.create(source, Token.EOF, "<EOF>", Token.DEFAULT_CHANNEL, offset, offset - 1, line, charPositionInLine);
+		}
+
+		org.netbeans.api.lexer.Token<DLTokenId> token = tokens.token();
+		String text = token.text().toString();
+		int start = tokens.offset();
+
+		Token result = tokenFactory.create(
+			source,
+			DLLexer.getAntlrType(token),
+			text,
+			DLLexer.getAntlrChannel(token),
+			start,
+			start + text.length() - 1,
+			line,
+			charPositionInLine
+		);
+
+		// Track the location behind the token
+		for (int i = 0; i < text.length(); ++i) {
+			if (text.charAt(i) == '\n') {
+				line += 1;
+				charPositionInLine = 0;
+			} else {
+				charPositionInLine += 1;
+			}
+		}
+		offset = start + text.length();
+
+		return result;
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	@Override
+	public int getLine()
+	{
+		return line;
+	}
+
+	@Override
+	public int getCharPositionInLine()
+	{
+		return charPositionInLine;
+	}
+
+	@Override
+	public CharStream getInputStream()
+	{
+		return null;
+	}
+
+	@Override
+	public String getSourceName()
+	{
+		return "TokenHierarchy";
+	}
+
+	@Override
+	public void setTokenFactory(TokenFactory<?> factory)
+	{
+		assert factory != null;
+
+		this.tokenFactory = factory;
+	}
+
+	@Override
+	public TokenFactory<?> getTokenFactory()
+	{
+		return tokenFactory;
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,60 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import de.s42.dl.netbeans.syntax.DLParseCancelledException;
+import java.util.function.BooleanSupplier;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.RuleNode;
+
+/**
+ * Walks a parse tree but stops with a DLParseCancelledException before entering the next rule once cancelled.
+ *
+ * @author Benjamin Schiller
+ */
+public class CancellableParseTreeWalker extends ParseTreeWalker
+{
+
+	protected final BooleanSupplier cancelled;
+
+	public CancellableParseTreeWalker(BooleanSupplier cancelled)
+	{
+		assert cancelled != null;
+
+		this.cancelled = cancelled;
+	}
+
+	@Override
+	protected void enterRule(ParseTreeListener listener, RuleNode rule)
+	{
+		if (cancelled.getAsBoolean()) {
+			throw new DLParseCancelledException();
+		}
+
+		super.enterRule(listener, rule);
+	}
+}
@@ -0,0 +1,542 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import de.s42.dl.DLModule;
+import de.s42.dl.core.BaseDLCore;
+import de.s42.dl.core.DefaultCore;
+import de.s42.dl.exceptions.DLException;
+import de.s42.dl.exceptions.InvalidValue;
+import de.s42.dl.parser.DLHrfParsing;
+import de.s42.dl.parser.DLLexer;
+import de.s42.dl.parser.DLParser;
+import de.s42.dl.parser.DLParser.DataContext;
+import de.s42.dl.parser.DLParser.RequireContext;
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeWalker;
+import org.antlr.v4.runtime.tree.Trees;
+
+/**
+ * Provides DL cores for the parsing in the IDE. The resolver only cores used by the static analysis are set up once
+ * per thread and handed out again and again. Resolve directories added while a core is acquired are reference counted
+ * and dropped again on release, so every acquisition starts from the same prototype state.
+ *
+ * @author Benjamin Schiller
+ */
+public final class DLCoreHelper
+{
+
+	private final static Logger log = LogManager.getLogger(DLCoreHelper.class.getName());
+
+	private final static ThreadLocal<PooledCore> STATIC_CORES = new ThreadLocal<>();
+
+	// Parse trees of auto require modules and their required files by the auto require path
+	private final static Map<Path, AutoRequireClosure> AUTO_REQUIRES = new ConcurrentHashMap<>();
+
+	private DLCoreHelper()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * Holds a pooled core and the resolve directories added to it since it got acquired
+	 */
+	private static class PooledCore
+	{
+
+		protected final BaseDLCore core;
+		protected final Map<Path, Integer> resolveDirectories = new HashMap<>();
+		protected boolean acquired;
+
+		protected PooledCore(BaseDLCore core)
+		{
+			assert core != null;
+
+			this.core = core;
+		}
+	}
+
+	/**
+	 * The parse trees of an auto require file and all files it requires transitively. Valid as long as the modification
+	 * time and size of none of these files changed. Requires which do not resolve to a file next to the requiring one
+	 * are left to the resolvers of the core.
+	 */
+	private static class AutoRequireClosure
+	{
+
+		protected final Map<Path, FileStamp> stamps = new HashMap<>();
+		protected final Map<Path, DataContext> trees = new HashMap<>();
+		protected final Map<Path, Map<String, Path>> requiresByFile = new HashMap<>();
+		protected boolean valid = true;
+
+		protected boolean matches()
+		{
+			for (Map.Entry<Path, FileStamp> entry : stamps.entrySet()) {
+				if (!entry.getValue().matches(entry.getKey())) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		protected Optional<Path> getRequiredFile(Path file, String moduleId)
+		{
+			assert file != null;
+			assert moduleId != null;
+
+			return Optional.ofNullable(requiresByFile.getOrDefault(file, Map.of()).get(moduleId));
+		}
+	}
+
+	/**
+	 * Modification time and size of a file
+	 */
+	private static class FileStamp
+	{
+
+		protected final long lastModified;
+		protected final long size;
+
+		protected FileStamp(BasicFileAttributes attributes)
+		{
+			assert attributes != null;
+
+			this.lastModified = attributes.lastModifiedTime().toMillis();
+			this.size = attributes.size();
+		}
+
+		protected boolean matches(Path file)
+		{
+			assert file != null;
+
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+				return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size;
+			} catch (IOException | InvalidPathException ex) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Evaluates the required files of the closure from their cached trees instead of letting the core read and parse
+	 * them again. Each file gets evaluated once per core.
+	 */
+	private static class AutoRequireParsing extends DLHrfParsing
+	{
+
+		protected final BaseDLCore core;
+		protected final DLModule module;
+		protected final Path file;
+		protected final AutoRequireClosure closure;
+		protected final Set<Path> evaluated;
+
+		protected AutoRequireParsing(BaseDLCore core, DLModule module, Path file, AutoRequireClosure closure, Set<Path> evaluated)
+		{
+			super(core, module);
+
+			assert core != null;
+			assert module != null;
+			assert file != null;
+			assert closure != null;
+			assert evaluated != null;
+
+			this.core = core;
+			this.module = module;
+			this.file = file;
+			this.closure = closure;
+			this.evaluated = evaluated;
+		}
+
+		@Override
+		public void exitRequire(RequireContext ctx)
+		{
+			Optional<Path> optRequired = DLHrfParsing.getRequireModuleId(ctx.requireModuleId())
+				.flatMap((moduleId) -> closure.getRequiredFile(file, moduleId));
+
+			if (optRequired.isEmpty()) {
+				super.exitRequire(ctx);
+				return;
+			}
+
+			Path required = optRequired.orElseThrow();
+
+			if (!evaluated.add(required)) {
+				return;
+			}
+
+			DLModule requiredModule = core.createModule(required.toString());
+			ParseTreeWalker.DEFAULT.walk(new AutoRequireParsing(core, requiredModule, required, closure, evaluated), closure.trees.get(required));
+			module.addChild(requiredModule);
+		}
+	}
+
+	/**
+	 * Evaluates the auto require module into the given core. The auto require and the files it requires are just lexed
+	 * and parsed again if one of them changed since the last time, the evaluation itself runs on each core. So all
+	 * types, aliases, annotations, pragmas and exports of the auto require and the modules it requires get registered
+	 * into the core as with core.parse.
+	 *
+	 * @param core a core created by createModuleCore
+	 * @param autoRequirePath
+	 *
+	 * @return the auto require module
+	 *
+	 * @throws DLException
+	 */
+	public static DLModule evaluateAutoRequire(BaseDLCore core, Path autoRequirePath) throws DLException
+	{
+		assert core != null;
+		assert autoRequirePath != null;
+
+		Path path = autoRequirePath.toAbsolutePath().normalize();
+		AutoRequireClosure closure = getAutoRequireClosure(path);
+
+		// Let the core report read and syntax errors as before
+		if (!closure.valid) {
+			return core.parse(path.toString());
+		}
+
+		// The shared trees are just read by the walk
+		Set<Path> evaluated = new HashSet<>();
+		evaluated.add(path);
+		DLModule module = core.createModule(path.toString());
+		ParseTreeWalker.DEFAULT.walk(new AutoRequireParsing(core, module, path, closure, evaluated), closure.trees.get(path));
+
+		return module;
+	}
+
+	private static AutoRequireClosure getAutoRequireClosure(Path autoRequirePath)
+	{
+		assert autoRequirePath != null;
+
+		AutoRequireClosure closure = AUTO_REQUIRES.get(autoRequirePath);
+
+		if (closure != null && closure.matches()) {
+			return closure;
+		}
+
+		// Check again under the lock of the entry -> concurrent parses wait for a single rebuild
+		return AUTO_REQUIRES.compute(autoRequirePath, (path, current) -> {
+			if (current != null && current.matches()) {
+				return current;
+			}
+			return parseAutoRequireClosure(path);
+		});
+	}
+
+	private static AutoRequireClosure parseAutoRequireClosure(Path autoRequirePath)
+	{
+		assert autoRequirePath != null;
+
+		AutoRequireClosure closure = new AutoRequireClosure();
+		Deque<Path> pending = new ArrayDeque<>();
+		pending.add(autoRequirePath);
+
+		while (!pending.isEmpty()) {
+
+			Path file = pending.poll();
+
+			if (closure.stamps.containsKey(file)) {
+				continue;
+			}
+
+			// The attributes are taken before reading -> a change meanwhile leads to another parse next time
+			DataContext data = null;
+			try {
+				closure.stamps.put(file, new FileStamp(Files.readAttributes(file, BasicFileAttributes.class)));
+				data = parseAutoRequire(file);
+			} catch (IOException | InvalidPathException ex) {
+				// data stays null
+			}
+
+			if (data == null) {
+				closure.valid = false;
+				return closure;
+			}
+
+			closure.trees.put(file, data);
+
+			Map<String, Path> requires = new HashMap<>();
+			for (ParseTree node : Trees.findAllRuleNodes(data, DLParser.RULE_require)) {
+
+				Optional<String> optModuleId = DLHrfParsing.getRequireModuleId(((RequireContext) node).requireModuleId());
+				if (optModuleId.isEmpty()) {
+					continue;
+				}
+
+				Optional<Path> optRequired = resolveRequiredFile(file, optModuleId.orElseThrow());
+				if (optRequired.isPresent()) {
+					requires.put(optModuleId.orElseThrow(), optRequired.orElseThrow());
+					pending.add(optRequired.orElseThrow());
+				}
+			}
+			closure.requiresByFile.put(file, requires);
+		}
+
+		return closure;
+	}
+
+	private static Optional<Path> resolveRequiredFile(Path file, String moduleId)
+	{
+		assert file != null;
+		assert moduleId != null;
+
+		try {
+			Path required = file.resolveSibling(moduleId).toAbsolutePath().normalize();
+
+			if (Files.isRegularFile(required)) {
+				return Optional.of(required);
+			}
+		} catch (InvalidPathException ex) {
+			// Not a file path (i.e. a library module) -> left to the core
+		}
+
+		return Optional.empty();
+	}
+
+	/**
+	 * @param autoRequirePath
+	 *
+	 * @return the parse tree or null if the file could not be read or contains syntax errors
+	 */
+	private static DataContext parseAutoRequire(Path autoRequirePath)
+	{
+		assert autoRequirePath != null;
+
+		log.debug("parseAutoRequire", autoRequirePath);
+
+		AtomicBoolean errors = new AtomicBoolean();
+		BaseErrorListener errorListener = new BaseErrorListener()
+		{
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine, String msg, RecognitionException e)
+			{
+				errors.set(true);
+			}
+		};
+
+		try {
+			DLLexer lexer = new DLLexer(CharStreams.fromPath(autoRequirePath));
+			lexer.removeErrorListeners();
+			lexer.addErrorListener(errorListener);
+
+			DLParser parser = new DLParser(new CommonTokenStream(lexer));
+			parser.removeErrorListeners();
+			parser.addErrorListener(errorListener);
+
+			DataContext data = parser.data();
+
+			return errors.get() ? null : data;
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a fully initialized core which is able to evaluate modules. As types get registered into it while
+	 * evaluating such a core can not be shared.
+	 *
+	 * @param resolveDirectory optional directory to resolve requires from
+	 *
+	 * @return
+	 *
+	 * @throws DLException
+	 */
+	public static BaseDLCore createModuleCore(Path resolveDirectory) throws DLException
+	{
+		// @todo Load as little as possible to make sure modules can have a plain core
+		BaseDLCore core = new BaseDLCore(true);
+		DefaultCore.loadResolvers(core);
+		DefaultCore.loadAnnotations(core);
+		DefaultCore.loadPragmas(core);
+		DefaultCore.loadTypes(core);
+		DefaultCore.loadExports(core);
+
+		if (resolveDirectory != null) {
+			core.getPathResolver().addResolveDirectory(resolveDirectory);
+		}
+
+		return core;
+	}
+
+	/**
+	 * Acquires the resolver only core of the current thread. Has to be given back with releaseStaticCore. If the core
+	 * of this thread is in use already (nested parsing) a new one is created.
+	 *
+	 * @param resolveDirectory optional directory to resolve requires from
+	 *
+	 * @return
+	 *
+	 * @throws InvalidValue
+	 */
+	public static BaseDLCore acquireStaticCore(Path resolveDirectory) throws InvalidValue
+	{
+		PooledCore pooled = STATIC_CORES.get();
+
+		if (pooled == null) {
+			log.debug("acquireStaticCore", "Creating static core for thread", Thread.currentThread().getName());
+			pooled = new PooledCore(createStaticCore());
+			STATIC_CORES.set(pooled);
+		}
+
+		BaseDLCore core;
+		if (!pooled.acquired) {
+			pooled.acquired = true;
+			core = pooled.core;
+		} else {
+			core = createStaticCore();
+		}
+
+		if (resolveDirectory != null) {
+			addResolveDirectory(core, resolveDirectory);
+		}
+
+		return core;
+	}
+
+	/**
+	 * Gives back a core acquired with acquireStaticCore and resets it to its prototype state
+	 *
+	 * @param core
+	 */
+	public static void releaseStaticCore(BaseDLCore core)
+	{
+		assert core != null;
+
+		PooledCore pooled = getPooledCore(core);
+
+		// Not pooled -> just let it go
+		if (pooled == null) {
+			return;
+		}
+
+		for (Path resolveDirectory : pooled.resolveDirectories.keySet()) {
+			core.getPathResolver().removeResolveDirectory(resolveDirectory);
+		}
+		pooled.resolveDirectories.clear();
+		pooled.acquired = false;
+	}
+
+	/**
+	 * Adds a resolve directory to the given core. For pooled cores the additions are counted so that nested
+	 * adds and removes of the same directory do not remove it too early.
+	 *
+	 * @param core
+	 * @param resolveDirectory
+	 */
+	public static void addResolveDirectory(BaseDLCore core, Path resolveDirectory)
+	{
+		assert core != null;
+		assert resolveDirectory != null;
+
+		PooledCore pooled = getPooledCore(core);
+
+		if (pooled == null) {
+			core.getPathResolver().addResolveDirectory(resolveDirectory);
+			return;
+		}
+
+		if (pooled.resolveDirectories.merge(resolveDirectory, 1, Integer::sum) == 1) {
+			core.getPathResolver().addResolveDirectory(resolveDirectory);
+		}
+	}
+
+	/**
+	 * Removes a resolve directory added with addResolveDirectory
+	 *
+	 * @param core
+	 * @param resolveDirectory
+	 */
+	public static void removeResolveDirectory(BaseDLCore core, Path resolveDirectory)
+	{
+		assert core != null;
+		assert resolveDirectory != null;
+
+		PooledCore pooled = getPooledCore(core);
+
+		if (pooled == null) {
+			core.getPathResolver().removeResolveDirectory(resolveDirectory);
+			return;
+		}
+
+		Integer count = pooled.resolveDirectories.get(resolveDirectory);
+
+		if (count == null) {
+			return;
+		}
+
+		if (count > 1) {
+			pooled.resolveDirectories.put(resolveDirectory, count - 1);
+		} else {
+			pooled.resolveDirectories.remove(resolveDirectory);
+			core.getPathResolver().removeResolveDirectory(resolveDirectory);
+		}
+	}
+
+	private static BaseDLCore createStaticCore() throws InvalidValue
+	{
+		BaseDLCore core = new BaseDLCore(true);
+		DefaultCore.loadResolvers(core);
+
+		return core;
+	}
+
+	private static PooledCore getPooledCore(BaseDLCore core)
+	{
+		assert core != null;
+
+		PooledCore pooled = STATIC_CORES.get();
+
+		if (pooled != null && pooled.core == core) {
+			return pooled;
+		}
+
+		return null;
+	}
+}
@@ -0,0 +1,219 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.openide.util.RequestProcessor;
+
+/**
+ * Limits the wall clock time and the bytes allocated by an evaluation on one thread. A watchdog checks the limits
+ * periodically and marks the budget as exceeded. Pass the budget as cancel state to the evaluation so it stops at the
+ * next rule then (see CancellableParseTreeWalker). A limit of 0 or less is not checked.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLEvaluationBudget implements BooleanSupplier
+{
+
+	private final static Logger log = LogManager.getLogger(DLEvaluationBudget.class.getName());
+
+	public final static int WATCHDOG_INTERVAL = 100;
+
+	private final static RequestProcessor WATCHDOG = new RequestProcessor(DLEvaluationBudget.class.getName(), 1, false, false);
+
+	protected final BooleanSupplier cancelled;
+	protected final long timeLimitMillis;
+	protected final long allocationLimitBytes;
+	protected volatile boolean exceeded;
+	protected volatile boolean abandoned;
+	protected volatile String exceededReason;
+	protected Thread thread;
+	protected long startNanos;
+	protected long startAllocatedBytes;
+	protected RequestProcessor.Task watchdog;
+
+	public DLEvaluationBudget(BooleanSupplier cancelled, long timeLimitMillis, long allocationLimitBytes)
+	{
+		assert cancelled != null;
+
+		this.cancelled = cancelled;
+		this.timeLimitMillis = timeLimitMillis;
+		this.allocationLimitBytes = allocationLimitBytes;
+	}
+
+	/**
+	 * Starts measuring the calling thread and the watchdog
+	 */
+	public synchronized void start()
+	{
+		assert thread == null : "Budget already started";
+
+		thread = Thread.currentThread();
+		startNanos = System.nanoTime();
+		startAllocatedBytes = getAllocatedBytes(thread);
+
+		if (timeLimitMillis > 0 || allocationLimitBytes > 0) {
+			watchdog = WATCHDOG.create(this::check);
+			watchdog.schedule(WATCHDOG_INTERVAL);
+		}
+	}
+
+	/**
+	 * Stops the evaluation at its next check - also if it did not start yet. Used if nobody waits for its result anymore.
+	 */
+	public void abandon()
+	{
+		abandoned = true;
+		stop();
+	}
+
+	/**
+	 * Stops the watchdog
+	 */
+	public synchronized void stop()
+	{
+		if (watchdog != null) {
+			watchdog.cancel();
+			watchdog = null;
+		}
+	}
+
+	protected synchronized void check()
+	{
+		// Stopped meanwhile
+		if (watchdog == null) {
+			return;
+		}
+
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+		if (timeLimitMillis > 0 && elapsedMillis > timeLimitMillis) {
+			exceed("took more than " + timeLimitMillis + " ms");
+			return;
+		}
+
+		long allocatedBytes = getAllocatedBytes(thread);
+		if (allocationLimitBytes > 0 && allocatedBytes >= 0 && startAllocatedBytes >= 0
+			&& allocatedBytes - startAllocatedBytes > allocationLimitBytes) {
+			exceed("allocated more than " + (allocationLimitBytes / (1024 * 1024)) + " MB");
+			return;
+		}
+
+		watchdog.schedule(WATCHDOG_INTERVAL);
+	}
+
+	protected void exceed(String reason)
+	{
+		assert reason != null;
+
+		log.warn("Evaluation budget exceeded", thread.getName(), reason);
+
+		exceededReason = reason;
+		exceeded = true;
+		watchdog = null;
+	}
+
+	/**
+	 * @param thread
+	 *
+	 * @return the bytes allocated by the thread so far or -1 if the JVM does not measure it
+	 */
+	protected static long getAllocatedBytes(Thread thread)
+	{
+		assert thread != null;
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+
+		com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+
+		if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+
+		return sunThreads.getThreadAllocatedBytes(thread.getId());
+	}
+
+	/**
+	 * @return true if the evaluation shall stop - either as cancelled or as the budget is exceeded
+	 */
+	@Override
+	public boolean getAsBoolean()
+	{
+		return exceeded || abandoned || cancelled.getAsBoolean();
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	public boolean isExceeded()
+	{
+		return exceeded;
+	}
+
+	public String getExceededReason()
+	{
+		return exceededReason;
+	}
+
+	public boolean isAbandoned()
+	{
+		return abandoned;
+	}
+
+	public synchronized boolean isStarted()
+	{
+		return thread != null;
+	}
+
+	/**
+	 * @return the milliseconds since the start or 0 if it did not start yet
+	 */
+	public synchronized long getElapsedMillis()
+	{
+		if (thread == null) {
+			return 0;
+		}
+
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+	}
+
+	public long getTimeLimitMillis()
+	{
+		return timeLimitMillis;
+	}
+
+	public long getAllocationLimitBytes()
+	{
+		return allocationLimitBytes;
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,78 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import javax.swing.text.Document;
+import org.netbeans.modules.parsing.api.Snapshot;
+
+/**
+ * Detects files which are too large for the full feature set. Such files keep the lexical coloring, but just get
+ * scope folds, no dynamic analysis and no navigator tree. The thresholds are defined in preferences.xml.
+ *
+ * @author Benjamin Schiller
+ */
+public final class DLLargeFiles
+{
+
+	private DLLargeFiles()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * @param length in chars
+	 * @param lines
+	 *
+	 * @return true if one of the thresholds is exceeded
+	 */
+	public static boolean isLargeFile(long length, long lines)
+	{
+		long maxSize = DLPreferences.getLargeFileSize();
+		long maxLines = DLPreferences.getLargeFileLines();
+
+		return (maxSize > 0 && length > maxSize) || (maxLines > 0 && lines > maxLines);
+	}
+
+	public static boolean isLargeFile(Document document)
+	{
+		assert document != null;
+
+		return isLargeFile(document.getLength(), document.getDefaultRootElement().getElementCount());
+	}
+
+	public static boolean isLargeFile(Snapshot snapshot)
+	{
+		assert snapshot != null;
+
+		// Counting lines is cheap on the document
+		Document document = snapshot.getSource().getDocument(false);
+		if (document != null) {
+			return isLargeFile(document);
+		}
+
+		return isLargeFile(snapshot.getText().length(), 0);
+	}
+}
@@ -0,0 +1,178 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import java.util.prefs.Preferences;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+
+/**
+ * Access to the DL specific settings. The defaults are defined in preferences.xml and can be overridden per user.
+ *
+ * @author Benjamin Schiller
+ */
+public final class DLPreferences
+{
+
+	public final static String CACHE_MAX_NODES = "dl-cache-max-nodes";
+	public final static int CACHE_MAX_NODES_DEFAULT = 500;
+
+	public final static String CACHE_SOFT_REFERENCES = "dl-cache-soft-references";
+	public final static boolean CACHE_SOFT_REFERENCES_DEFAULT = true;
+
+	public final static String INDEX_ENABLED = "dl-index-enabled";
+	public final static boolean INDEX_ENABLED_DEFAULT = true;
+
+	public final static String INDEXER_ENABLED = "dl-indexer-enabled";
+	public final static boolean INDEXER_ENABLED_DEFAULT = true;
+
+	public final static String DYNAMIC_TIME_LIMIT = "dl-dynamic-time-limit";
+	public final static long DYNAMIC_TIME_LIMIT_DEFAULT = 2000;
+
+	public final static String DYNAMIC_ALLOCATION_LIMIT = "dl-dynamic-allocation-limit";
+	public final static long DYNAMIC_ALLOCATION_LIMIT_DEFAULT = 256;
+
+	public final static String LARGE_FILE_SIZE = "dl-large-file-size";
+	public final static long LARGE_FILE_SIZE_DEFAULT = 1024;
+
+	public final static String LARGE_FILE_LINES = "dl-large-file-lines";
+	public final static long LARGE_FILE_LINES_DEFAULT = 20000;
+
+	private DLPreferences()
+	{
+		// never instantiated
+	}
+
+	public static Preferences getPreferences()
+	{
+		return MimeLookup.getLookup(DL_MIME_TYPE).lookup(Preferences.class);
+	}
+
+	public static int getInt(String key, int defaultValue)
+	{
+		assert key != null;
+
+		Preferences preferences = getPreferences();
+
+		if (preferences == null) {
+			return defaultValue;
+		}
+
+		return preferences.getInt(key, defaultValue);
+	}
+
+	public static long getLong(String key, long defaultValue)
+	{
+		assert key != null;
+
+		Preferences preferences = getPreferences();
+
+		if (preferences == null) {
+			return defaultValue;
+		}
+
+		return preferences.getLong(key, defaultValue);
+	}
+
+	public static boolean getBoolean(String key, boolean defaultValue)
+	{
+		assert key != null;
+
+		Preferences preferences = getPreferences();
+
+		if (preferences == null) {
+			return defaultValue;
+		}
+
+		return preferences.getBoolean(key, defaultValue);
+	}
+
+	// <editor-fold desc="Getters/Setters" defaultstate="collapsed">
+	/**
+	 * @return the maximal number of semantic cache nodes held strongly
+	 */
+	public static int getCacheMaxNodes()
+	{
+		return Math.max(1, getInt(CACHE_MAX_NODES, CACHE_MAX_NODES_DEFAULT));
+	}
+
+	/**
+	 * @return true if evicted semantic cache nodes are kept softly reachable until the memory is needed
+	 */
+	public static boolean isCacheSoftReferences()
+	{
+		return getBoolean(CACHE_SOFT_REFERENCES, CACHE_SOFT_REFERENCES_DEFAULT);
+	}
+
+	/**
+	 * @return true if the semantic cache is persisted into the on disk index
+	 */
+	public static boolean isIndexEnabled()
+	{
+		return getBoolean(INDEX_ENABLED, INDEX_ENABLED_DEFAULT);
+	}
+
+	/**
+	 * @return true if the DL files of opened projects are parsed in the background
+	 */
+	public static boolean isIndexerEnabled()
+	{
+		return getBoolean(INDEXER_ENABLED, INDEXER_ENABLED_DEFAULT);
+	}
+
+	/**
+	 * @return the maximal wall clock time in ms the dynamic analysis of a file may take, 0 for no limit
+	 */
+	public static long getDynamicTimeLimit()
+	{
+		return Math.max(0, getLong(DYNAMIC_TIME_LIMIT, DYNAMIC_TIME_LIMIT_DEFAULT));
+	}
+
+	/**
+	 * @return the maximal bytes the dynamic analysis of a file may allocate, 0 for no limit (configured in MB)
+	 */
+	public static long getDynamicAllocationLimit()
+	{
+		return Math.max(0, getLong(DYNAMIC_ALLOCATION_LIMIT, DYNAMIC_ALLOCATION_LIMIT_DEFAULT)) * 1024 * 1024;
+	}
+
+	/**
+	 * @return the chars above which a file is handled in large file mode, 0 for no limit (configured in KB)
+	 */
+	public static long getLargeFileSize()
+	{
+		return Math.max(0, getLong(LARGE_FILE_SIZE, LARGE_FILE_SIZE_DEFAULT)) * 1024;
+	}
+
+	/**
+	 * @return the lines above which a file is handled in large file mode, 0 for no limit
+	 */
+	public static long getLargeFileLines()
+	{
+		return Math.max(0, getLong(LARGE_FILE_LINES, LARGE_FILE_LINES_DEFAULT));
+	}
+	//</editor-fold>
+}
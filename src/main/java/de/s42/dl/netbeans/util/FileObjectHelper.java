@@ -27,21 +27,28 @@ package de.s42.dl.netbeans.util;
 
 import de.s42.dl.DLModule;
 import de.s42.dl.core.BaseDLCore;
-import de.s42.dl.core.DefaultCore;
 import de.s42.dl.exceptions.DLException;
+import de.s42.dl.netbeans.syntax.DLTokenHierarchySource;
+import de.s42.dl.parser.DLHrfParsing;
 import de.s42.dl.parser.DLLexer;
+import de.s42.dl.parser.DLParser.DataContext;
 import de.s42.log.LogManager;
 import de.s42.log.Logger;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 import javax.swing.JEditorPane;
 import javax.swing.SwingUtilities;
 import javax.swing.text.BadLocationException;
 import org.antlr.v4.runtime.BufferedTokenStream;
 import org.antlr.v4.runtime.CharStreams;
-import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
 import org.netbeans.editor.BaseDocument;
 import org.openide.cookies.EditorCookie;
 import org.openide.filesystems.FileObject;
@@ -113,7 +120,7 @@ public final class FileObjectHelper
 	 *
 	 * @return
 	 */
-	public static TokenStream getDLTokenStream(String content)
+	public static BufferedTokenStream getDLTokenStream(String content)
 	{
 		assert content != null;
 
@@ -123,6 +130,65 @@ public final class FileObjectHelper
 		return new BufferedTokenStream(lexer);
 	}
 
+	/**
+	 * Constructs a new TokenStream over the already lexed tokens of the token hierarchy of the document. Lexes the text
+	 * of the document if it has no active token hierarchy. Has to be used under the lock of the document.
+	 *
+	 * @param document
+	 *
+	 * @return
+	 */
+	public static BufferedTokenStream getDLTokenStream(BaseDocument document)
+	{
+		assert document != null;
+
+		Optional<TokenSource> optTokenSource = DLTokenHierarchySource.create(document);
+
+		if (optTokenSource.isPresent()) {
+			return new BufferedTokenStream(optTokenSource.orElseThrow());
+		}
+
+		return getDLTokenStream(getText(document));
+	}
+
+	/**
+	 * Constructs a new TokenStream over the tokens of the document which start up to the given offset. The tokens are
+	 * copied, so the stream stays usable while the document gets modified. Lexes the text up to the offset if the
+	 * document has no active token hierarchy. Has to be used under the lock of the document.
+	 *
+	 * @param document
+	 * @param endOffset
+	 *
+	 * @return
+	 *
+	 * @throws BadLocationException
+	 */
+	public static BufferedTokenStream getDLTokenStream(BaseDocument document, int endOffset) throws BadLocationException
+	{
+		assert document != null;
+		assert endOffset >= 0;
+
+		Optional<TokenSource> optTokenSource = DLTokenHierarchySource.create(document);
+
+		TokenSource tokenSource;
+		if (optTokenSource.isPresent()) {
+			tokenSource = optTokenSource.orElseThrow();
+		} else {
+			DLLexer lexer = new DLLexer(CharStreams.fromString(document.getText(0, Math.min(endOffset + 1, document.getLength()))));
+			lexer.removeErrorListeners();
+			tokenSource = lexer;
+		}
+
+		List<Token> tokens = new ArrayList<>();
+		Token token = tokenSource.nextToken();
+		while (token.getType() != Token.EOF && token.getStartIndex() <= endOffset) {
+			tokens.add(token);
+			token = tokenSource.nextToken();
+		}
+
+		return new BufferedTokenStream(new ListTokenSource(tokens));
+	}
+
 	public static DLModule parseModule(Path modulePath) throws DLException
 	{
 		assert modulePath != null;
@@ -146,21 +212,10 @@ public final class FileObjectHelper
 		try {
 			// Parse the DL and create module as root
 			log.start("FileObjectHelper.parseModule");
-			// @todo Load as little as possible to make sure modules can have a plain core
-			final BaseDLCore core = new BaseDLCore(true);
-			DefaultCore.loadResolvers(core);
-			DefaultCore.loadAnnotations(core);
-			DefaultCore.loadPragmas(core);
-			DefaultCore.loadTypes(core);
-			DefaultCore.loadExports(core);
-			core.getPathResolver().addResolveDirectory(Path.of(moduleId).getParent());
+			final BaseDLCore core = DLCoreHelper.createModuleCore(Path.of(moduleId).getParent());
 
 			// Load a auto require dl if given
-			DLModule autoRequireModule = null;
-			Optional<Path> optAutoPath = FileObjectHelper.resolveAutoRequireDl(Path.of(moduleId));
-			if (optAutoPath.isPresent()) {
-				autoRequireModule = core.parse(optAutoPath.orElseThrow().toString());
-			}
+			DLModule autoRequireModule = loadAutoRequireModule(core, moduleId);
 
 			final DLModule module = core.parse(moduleId, content);
 
@@ -175,6 +230,78 @@ public final class FileObjectHelper
 		}
 	}
 
+	/**
+	 * Evaluates an already parsed DL data tree into a module. This allows to share one lexing and parsing pass between
+	 * the static and the dynamic analysis of a document.
+	 *
+	 * @param moduleId
+	 * @param data parse tree of the module content as created by the DLParser
+	 *
+	 * @return
+	 *
+	 * @throws DLException
+	 */
+	public static DLModule evaluateModule(String moduleId, DataContext data) throws DLException
+	{
+		return evaluateModule(moduleId, data, () -> false);
+	}
+
+	/**
+	 * Evaluates an already parsed DL data tree into a module. The evaluation stops with a DLParseCancelledException as
+	 * soon as cancelled returns true.
+	 *
+	 * @param moduleId
+	 * @param data parse tree of the module content as created by the DLParser
+	 * @param cancelled
+	 *
+	 * @return
+	 *
+	 * @throws DLException
+	 */
+	public static DLModule evaluateModule(String moduleId, DataContext data, BooleanSupplier cancelled) throws DLException
+	{
+		assert moduleId != null;
+		assert data != null;
+		assert cancelled != null;
+
+		log.debug("evaluateModule", moduleId);
+
+		try {
+			log.start("FileObjectHelper.evaluateModule");
+			final BaseDLCore core = DLCoreHelper.createModuleCore(Path.of(moduleId).getParent());
+
+			// Load a auto require dl if given
+			DLModule autoRequireModule = loadAutoRequireModule(core, moduleId);
+
+			// Walk the given tree instead of lexing and parsing the content again
+			final DLModule module = core.createModule(moduleId);
+			new CancellableParseTreeWalker(cancelled).walk(new DLHrfParsing(core, module), data);
+
+			if (autoRequireModule != null) {
+				module.addChild(autoRequireModule);
+			}
+
+			return module;
+
+		} finally {
+			log.stopDebug("FileObjectHelper.evaluateModule");
+		}
+	}
+
+	private static DLModule loadAutoRequireModule(BaseDLCore core, String moduleId) throws DLException
+	{
+		assert core != null;
+		assert moduleId != null;
+
+		// The auto require is shared by many modules -> evaluate its cached parse tree instead of parsing it again
+		Optional<Path> optAutoPath = FileObjectHelper.resolveAutoRequireDl(Path.of(moduleId));
+		if (optAutoPath.isPresent()) {
+			return DLCoreHelper.evaluateAutoRequire(core, optAutoPath.orElseThrow());
+		}
+
+		return null;
+	}
+
 	/**
 	 * Tries to resolve a fitting nb-project.dl for a given path. It traverses from this directory up until root.
 	 * The first macthed is returned. it does not return itself if the path denotes an auto require already.
@@ -205,6 +332,15 @@ public final class FileObjectHelper
 		return resolveTraversedRequiredDl(path, AUTO_REQUIRE_DL_NAME);
 	}
 
+	/**
+	 * Finds the first file with the given name in the directory of the path or one of its parents. The results are
+	 * cached (see TraversedFileResolver).
+	 *
+	 * @param path
+	 * @param requirableFileName
+	 *
+	 * @return
+	 */
 	public static Optional<Path> resolveTraversedRequiredDl(Path path, String requirableFileName)
 	{
 		assert path != null;
@@ -223,16 +359,12 @@ public final class FileObjectHelper
 				}
 
 				currentPath = currentPath.getParent();
+			} else if (!Files.isDirectory(currentPath)) {
+				return Optional.empty();
 			}
 
 			// Traverse up the directories and search for first matching auto require
-			for (int i = 0; i < MAX_RESOLVE_DEPTH && currentPath != null && Files.isDirectory(currentPath); ++i) {
-				Path autoRequireDL = currentPath.resolve(requirableFileName);
-				if (Files.isRegularFile(autoRequireDL)) {
-					return Optional.of(autoRequireDL);
-				}
-				currentPath = currentPath.getParent();
-			}
+			return TraversedFileResolver.resolve(currentPath, requirableFileName, MAX_RESOLVE_DEPTH);
 		} catch (InvalidPathException ex) {
 			log.error(ex.getMessage());
 		}
@@ -0,0 +1,106 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Estimates the heap size of model objects. Assumes a 64 bit VM with compressed references (12 bytes object header,
+ * 4 bytes per reference, 8 bytes alignment) and compact latin1 strings. Shared objects are just counted once.
+ *
+ * @author Benjamin Schiller
+ */
+public final class MemoryHelper
+{
+
+	public final static int OBJECT_HEADER = 12;
+	public final static int ARRAY_HEADER = 16;
+	public final static int REFERENCE = 4;
+	public final static int INT = 4;
+	public final static int ALIGNMENT = 8;
+
+	// Header, hash, coder, hashIsZero and value reference
+	protected final static long STRING_SHALLOW = align(OBJECT_HEADER + INT + 1 + 1 + REFERENCE);
+
+	// Header, modCount, size and elementData reference
+	protected final static long ARRAY_LIST_SHALLOW = align(OBJECT_HEADER + INT + INT + REFERENCE);
+
+	private MemoryHelper()
+	{
+		// never instantiated
+	}
+
+	public static long align(long size)
+	{
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	/**
+	 * @param references number of reference fields
+	 * @param primitiveBytes bytes of all primitive fields
+	 *
+	 * @return the shallow size of an object with the given fields
+	 */
+	public static long estimateObjectSize(int references, int primitiveBytes)
+	{
+		return align(OBJECT_HEADER + references * REFERENCE + primitiveBytes);
+	}
+
+	/**
+	 * @param value
+	 * @param counted objects already counted - the string is not counted again if contained
+	 *
+	 * @return the retained size of the string
+	 */
+	public static long estimateStringSize(String value, Set<Object> counted)
+	{
+		assert counted != null;
+
+		if (value == null || !counted.add(value)) {
+			return 0;
+		}
+
+		return STRING_SHALLOW + align(ARRAY_HEADER + value.length());
+	}
+
+	/**
+	 * @param list
+	 * @param counted objects already counted - the list is not counted again if contained
+	 *
+	 * @return the size of the list itself without its elements
+	 */
+	public static long estimateListSize(List<?> list, Set<Object> counted)
+	{
+		assert counted != null;
+
+		if (list == null || list.isEmpty() || !counted.add(list)) {
+			return 0;
+		}
+
+		return ARRAY_LIST_SHALLOW + align(ARRAY_HEADER + (long) list.size() * REFERENCE);
+	}
+}
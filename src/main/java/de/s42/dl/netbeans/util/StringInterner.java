@@ -0,0 +1,146 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates the identifiers of types and other model entries which get repeated in many modules. In contrast to
+ * String.intern the pooled strings are weakly held and get collected once no entry uses them anymore. Lookups do not
+ * lock, collected strings are removed on the next intern.
+ *
+ * @author Benjamin Schiller
+ */
+public final class StringInterner
+{
+
+	private final static Map<PooledString, PooledString> POOL = new ConcurrentHashMap<>();
+
+	private final static ReferenceQueue<String> COLLECTED = new ReferenceQueue<>();
+
+	/**
+	 * Weak reference which compares by the content of its string. A cleared reference just equals itself, so it can
+	 * still be removed from the pool.
+	 */
+	private static class PooledString extends WeakReference<String>
+	{
+
+		protected final int hash;
+
+		protected PooledString(String value, ReferenceQueue<String> queue)
+		{
+			super(value, queue);
+
+			assert value != null;
+
+			this.hash = value.hashCode();
+		}
+
+		// <editor-fold desc="equals/hashCode" defaultstate="collapsed">
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof PooledString)) {
+				return false;
+			}
+			final PooledString other = (PooledString) obj;
+			String value = get();
+			return hash == other.hash && value != null && value.equals(other.get());
+		}
+		//</editor-fold>
+	}
+
+	private StringInterner()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * Returns the pooled instance equal to the given string
+	 *
+	 * @param value
+	 *
+	 * @return the pooled instance or null if value is null
+	 */
+	public static String intern(String value)
+	{
+		if (value == null) {
+			return null;
+		}
+
+		removeCollected();
+
+		PooledString candidate = new PooledString(value, COLLECTED);
+
+		while (true) {
+
+			PooledString pooled = POOL.putIfAbsent(candidate, candidate);
+
+			if (pooled == null) {
+				return value;
+			}
+
+			String pooledValue = pooled.get();
+
+			if (pooledValue != null) {
+				return pooledValue;
+			}
+
+			// Collected meanwhile -> replace it unless another thread did already
+			POOL.remove(pooled, pooled);
+		}
+	}
+
+	/**
+	 * @return the number of pooled strings including the collected ones which are not removed yet
+	 */
+	static int getPoolSize()
+	{
+		removeCollected();
+
+		return POOL.size();
+	}
+
+	private static void removeCollected()
+	{
+		Object collected;
+		while ((collected = COLLECTED.poll()) != null) {
+			POOL.remove((PooledString) collected, collected);
+		}
+	}
+}
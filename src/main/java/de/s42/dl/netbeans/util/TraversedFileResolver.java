@@ -0,0 +1,185 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import de.s42.log.LogManager;
+import de.s42.log.Logger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.openide.filesystems.FileChangeAdapter;
+import org.openide.filesystems.FileEvent;
+import org.openide.filesystems.FileRenameEvent;
+import org.openide.filesystems.FileUtil;
+
+/**
+ * Finds the first file with a given name in a directory or its parents (i.e. auto-require.dl). The result is cached
+ * per directory and file name, so walking up is shared between all directories below a resolved one. Every probed
+ * candidate file is watched and the cached results below its directory are dropped once it gets created, deleted or
+ * renamed.
+ *
+ * @author Benjamin Schiller
+ */
+public final class TraversedFileResolver
+{
+
+	private final static Logger log = LogManager.getLogger(TraversedFileResolver.class.getName());
+
+	// Results by directory by file name
+	private final static Map<String, Map<Path, Optional<Path>>> RESOLVED_BY_NAME = new ConcurrentHashMap<>();
+
+	// Watched candidate files
+	private final static Map<Path, CandidateListener> LISTENERS_BY_CANDIDATE = new ConcurrentHashMap<>();
+
+	protected static class CandidateListener extends FileChangeAdapter
+	{
+
+		protected final Path candidate;
+		protected final String fileName;
+
+		protected CandidateListener(Path candidate, String fileName)
+		{
+			assert candidate != null;
+			assert fileName != null;
+
+			this.candidate = candidate;
+			this.fileName = fileName;
+		}
+
+		@Override
+		public void fileDataCreated(FileEvent fe)
+		{
+			invalidate(candidate.getParent(), fileName);
+		}
+
+		@Override
+		public void fileDeleted(FileEvent fe)
+		{
+			invalidate(candidate.getParent(), fileName);
+		}
+
+		@Override
+		public void fileRenamed(FileRenameEvent fe)
+		{
+			invalidate(candidate.getParent(), fileName);
+		}
+	}
+
+	private TraversedFileResolver()
+	{
+		// never instantiated
+	}
+
+	/**
+	 * Returns the first file with the given name in the directory or one of its parents
+	 *
+	 * @param directory absolute and normalized directory to start in
+	 * @param fileName
+	 * @param maxDepth maximal number of directories to look into
+	 *
+	 * @return
+	 */
+	public static Optional<Path> resolve(Path directory, String fileName, int maxDepth)
+	{
+		assert directory != null;
+		assert fileName != null;
+
+		Map<Path, Optional<Path>> resolved = RESOLVED_BY_NAME.computeIfAbsent(fileName, (name) -> new ConcurrentHashMap<>());
+
+		List<Path> walked = new ArrayList<>();
+		Optional<Path> result = Optional.empty();
+		Path current = directory;
+
+		for (int i = 0; i < maxDepth && current != null; ++i) {
+
+			// A directory above got resolved already
+			Optional<Path> cached = resolved.get(current);
+			if (cached != null) {
+				result = cached;
+				break;
+			}
+
+			walked.add(current);
+
+			// Watch before checking to not miss a creation in between
+			Path candidate = current.resolve(fileName);
+			watch(candidate, fileName);
+
+			if (Files.isRegularFile(candidate)) {
+				result = Optional.of(candidate);
+				break;
+			}
+
+			current = current.getParent();
+		}
+
+		for (Path walkedDirectory : walked) {
+			resolved.put(walkedDirectory, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Drops all cached results for the file name in the directory and below it
+	 *
+	 * @param directory
+	 * @param fileName
+	 */
+	public static void invalidate(Path directory, String fileName)
+	{
+		assert directory != null;
+		assert fileName != null;
+
+		log.debug("invalidate", directory, fileName);
+
+		Map<Path, Optional<Path>> resolved = RESOLVED_BY_NAME.get(fileName);
+
+		if (resolved != null) {
+			resolved.keySet().removeIf((path) -> path.startsWith(directory));
+		}
+	}
+
+	protected static void watch(Path candidate, String fileName)
+	{
+		assert candidate != null;
+		assert fileName != null;
+
+		if (LISTENERS_BY_CANDIDATE.containsKey(candidate)) {
+			return;
+		}
+
+		CandidateListener listener = new CandidateListener(candidate, fileName);
+
+		if (LISTENERS_BY_CANDIDATE.putIfAbsent(candidate, listener) == null) {
+			FileUtil.addFileChangeListener(listener, FileUtil.normalizeFile(candidate.toFile()));
+		}
+	}
+}
@@ -0,0 +1,230 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.model.ModuleEntry;
+import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.util.DLPreferences;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks the eviction of DLSemanticCache and that evicted nodes come back from the persistent index or get rebuilt
+ * once.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSemanticCacheTest
+{
+
+	// Places puts the index below the user dir
+	@TempDir
+	protected static Path userDirectory;
+
+	@TempDir
+	protected Path directory;
+
+	@BeforeAll
+	public static void setUpUserDirectory()
+	{
+		System.setProperty("netbeans.user", userDirectory.toString());
+	}
+
+	protected static DLSemanticCacheNode createNode(DLSemanticCache cache, String key, String typeName)
+	{
+		DLSemanticCacheNode node = cache.createCacheNode(key, new ModuleEntry(key));
+		node.addType(new Type(typeName, null, key));
+
+		return node;
+	}
+
+	protected static boolean hasType(DLSemanticCacheNode node, String typeName)
+	{
+		return node.getTypes(false).stream().anyMatch((type) -> type.getIdentifier().equals(typeName));
+	}
+
+	protected List<String> createModuleFiles(int count) throws IOException
+	{
+		List<String> keys = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			Path file = Files.writeString(directory.resolve("module" + i + ".dl"), "type Module" + i + ";");
+			keys.add(DLSemanticCache.getCacheKey(file.toString()));
+		}
+
+		return keys;
+	}
+
+	@Test
+	public void pinnedAndAccessedNodesSurviveEviction()
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+		int maxNodes = DLPreferences.getCacheMaxNodes();
+
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i <= maxNodes; ++i) {
+			keys.add("memory:pinned" + i);
+		}
+
+		cache.pin(this, Set.of(keys.get(0)));
+
+		for (int i = 0; i < maxNodes; ++i) {
+			cache.setCacheNode(createNode(cache, keys.get(i), "Module" + i));
+		}
+
+		// Accessed since the clock hand passed -> gets a second chance
+		assertTrue(cache.getCacheNode(keys.get(1)).isPresent());
+
+		cache.setCacheNode(createNode(cache, keys.get(maxNodes), "Module" + maxNodes));
+
+		assertTrue(cache.getCacheNodeCount() <= maxNodes);
+		assertTrue(cache.nodesByKey.containsKey(keys.get(0)));
+		assertTrue(cache.nodesByKey.containsKey(keys.get(1)));
+		assertFalse(cache.nodesByKey.containsKey(keys.get(2)));
+		assertTrue(cache.evictedKeys.contains(keys.get(2)));
+
+		// Still available from the soft tier
+		assertTrue(cache.peekCacheNode(keys.get(2)).isPresent());
+	}
+
+	@Test
+	public void evictedNodesAreLoadedFromIndex() throws IOException
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+		int maxNodes = DLPreferences.getCacheMaxNodes();
+
+		List<String> keys = createModuleFiles(maxNodes + 1);
+		for (int i = 0; i < keys.size(); ++i) {
+			cache.setCacheNode(createNode(cache, keys.get(i), "Module" + i));
+		}
+
+		String evictedKey = keys.get(0);
+		assertFalse(cache.nodesByKey.containsKey(evictedKey));
+
+		// Dirty evicted nodes are held by the index until they are written
+		cache.flushIndex();
+		assertTrue(cache.index.isIndexed(evictedKey));
+
+		// Drop the soft tier as the garbage collector would
+		cache.softNodesByKey.clear();
+		assertTrue(cache.peekCacheNode(evictedKey).isEmpty());
+
+		Optional<DLSemanticCacheNode> optNode = cache.getCacheNode(evictedKey);
+
+		assertTrue(optNode.isPresent());
+		assertTrue(hasType(optNode.orElseThrow(), "Module0"));
+		assertFalse(cache.evictedKeys.contains(evictedKey));
+	}
+
+	@Test
+	public void indexedNodesAreRegisteredWithoutDecoding() throws IOException
+	{
+		List<String> keys = createModuleFiles(1);
+		String key = keys.get(0);
+
+		DLSemanticCache writingCache = new DLSemanticCache();
+		writingCache.setCacheNode(createNode(writingCache, key, "Module0"));
+		writingCache.flushIndex();
+
+		// Like after a restart
+		DLSemanticCache cache = new DLSemanticCache();
+
+		assertTrue(cache.registerIndexed(key));
+		assertEquals(0, cache.getCacheNodeCount());
+		assertTrue(cache.evictedKeys.contains(key));
+		assertFalse(cache.registerIndexed(directory.resolve("missing.dl").toString()));
+
+		Optional<DLSemanticCacheNode> optNode = cache.getCacheNode(key);
+
+		assertTrue(optNode.isPresent());
+		assertTrue(hasType(optNode.orElseThrow(), "Module0"));
+	}
+
+	@Test
+	public void evictedNodesAreRebuiltOnce() throws Exception
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+		int maxNodes = DLPreferences.getCacheMaxNodes();
+
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i <= maxNodes; ++i) {
+			keys.add("memory:rebuilt" + i);
+			cache.setCacheNode(createNode(cache, keys.get(i), "Module" + i));
+		}
+
+		String evictedKey = keys.get(0);
+		assertTrue(cache.evictedKeys.contains(evictedKey));
+		cache.softNodesByKey.clear();
+
+		AtomicInteger builds = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		cache.setNodeBuilder((key) -> {
+			builds.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			cache.setCacheNode(createNode(cache, key, "Rebuilt"));
+		});
+
+		// Just prefetches in the background - the build is blocked until released
+		assertTrue(cache.getCacheNode(evictedKey).isEmpty());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Optional<DLSemanticCacheNode>> first = executor.submit(() -> cache.loadCacheNode(evictedKey));
+			Future<Optional<DLSemanticCacheNode>> second = executor.submit(() -> cache.loadCacheNode(evictedKey));
+
+			Thread.sleep(100);
+			release.countDown();
+
+			assertTrue(hasType(first.get(5, TimeUnit.SECONDS).orElseThrow(), "Rebuilt"));
+			assertTrue(hasType(second.get(5, TimeUnit.SECONDS).orElseThrow(), "Rebuilt"));
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertEquals(1, builds.get());
+	}
+}
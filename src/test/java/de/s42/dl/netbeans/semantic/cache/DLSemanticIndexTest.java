@@ -0,0 +1,258 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.semantic.cache;
+
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheModule.NodeReference;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticIndex.IndexEntry;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticIndex.IndexFile;
+import de.s42.dl.netbeans.semantic.model.EnumType;
+import de.s42.dl.netbeans.semantic.model.ModuleEntry;
+import de.s42.dl.netbeans.semantic.model.Type;
+import de.s42.dl.netbeans.semantic.model.TypeUsage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Encodes nodes and index files with DLSemanticIndex and checks that decoding them gives back the same content.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSemanticIndexTest
+{
+
+	public final static String KEY = "/modules/index.dl";
+	public final static String REQUIRED_KEY = "/modules/required.dl";
+
+	@TempDir
+	protected Path directory;
+
+	protected static Type setLocation(Type type, int startOffset, int endOffset)
+	{
+		type.setStartLine(startOffset + 1);
+		type.setStartPosition(1);
+		type.setStartOffset(startOffset);
+		type.setEndLine(endOffset + 1);
+		type.setEndPosition(endOffset - startOffset + 1);
+		type.setEndOffset(endOffset);
+
+		return type;
+	}
+
+	protected static DLSemanticCacheModule createNode(DLSemanticCache cache)
+	{
+		DLSemanticCacheModule node = new DLSemanticCacheModule(cache, KEY, new ModuleEntry(KEY));
+
+		Type base = setLocation(new Type("Base", null, KEY), 0, 10);
+		EnumType color = (EnumType) setLocation(new EnumType("Color", List.of("RED", "GREEN"), null, KEY), 12, 30);
+		EnumType shade = (EnumType) setLocation(new EnumType("Shade", List.of("RED", "GREEN"), null, KEY, color), 32, 40);
+		Type alias = setLocation(new Type("BaseAlias", null, KEY, base), 42, 50);
+
+		// Added out of document order - aliases have to be decoded behind their targets anyway
+		node.addType(alias);
+		node.addType(shade);
+		node.addType(color);
+		node.addType(base);
+
+		NodeReference reference = new NodeReference();
+		reference.key = REQUIRED_KEY;
+		reference.startLine = 1;
+		reference.startPosition = 1;
+		reference.startOffset = 0;
+		reference.endLine = 1;
+		reference.endPosition = 20;
+		reference.endOffset = 19;
+		node.addNodeReference(reference);
+
+		TypeUsage usage = new TypeUsage("Required", REQUIRED_KEY, null, KEY);
+		usage.setStartLine(5);
+		usage.setStartPosition(3);
+		usage.setStartOffset(60);
+		usage.setEndLine(5);
+		usage.setEndPosition(11);
+		usage.setEndOffset(68);
+		node.addTypeUsage(usage);
+
+		return node;
+	}
+
+	protected static Map<String, Type> getTypesByIdentifier(DLSemanticCacheNode node)
+	{
+		return node.getTypes(false).stream().collect(Collectors.toMap(Type::getIdentifier, (type) -> type));
+	}
+
+	@Test
+	public void decodedNodeMatchesEncodedNode() throws IOException
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+		DLSemanticCacheModule node = createNode(cache);
+
+		DLSemanticCacheModule decoded = cache.index.decodeNode(KEY, ByteBuffer.wrap(DLSemanticIndex.encodeNode(node)));
+
+		assertEquals(KEY, decoded.getKey());
+
+		Map<String, Type> types = getTypesByIdentifier(node);
+		Map<String, Type> decodedTypes = getTypesByIdentifier(decoded);
+		assertEquals(types.keySet(), decodedTypes.keySet());
+
+		for (Type type : types.values()) {
+
+			Type decodedType = decodedTypes.get(type.getIdentifier());
+
+			assertEquals(type.getClass(), decodedType.getClass());
+			assertEquals(type.getModuleId(), decodedType.getModuleId());
+			assertEquals(type.getStartLine(), decodedType.getStartLine());
+			assertEquals(type.getStartPosition(), decodedType.getStartPosition());
+			assertEquals(type.getStartOffset(), decodedType.getStartOffset());
+			assertEquals(type.getEndLine(), decodedType.getEndLine());
+			assertEquals(type.getEndPosition(), decodedType.getEndPosition());
+			assertEquals(type.getEndOffset(), decodedType.getEndOffset());
+
+			if (type instanceof EnumType) {
+				assertEquals(((EnumType) type).getValues(), ((EnumType) decodedType).getValues());
+			}
+		}
+
+		// Alias links point to the decoded targets
+		assertSame(decodedTypes.get("Base"), decodedTypes.get("BaseAlias").getAliasOf());
+		assertSame(decodedTypes.get("Color"), decodedTypes.get("Shade").getAliasOf());
+		assertNull(decodedTypes.get("Base").getAliasOf());
+
+		assertEquals(Set.of(REQUIRED_KEY), decoded.getReferencedKeys());
+		NodeReference decodedReference = decoded.references.iterator().next();
+		assertEquals(0, decodedReference.startOffset);
+		assertEquals(19, decodedReference.endOffset);
+		assertEquals(20, decodedReference.endPosition);
+
+		List<TypeUsage> usages = decoded.getTypeUsages("Required");
+		assertEquals(1, usages.size());
+		assertEquals(REQUIRED_KEY, usages.get(0).getTypeModuleId());
+		assertEquals(KEY, usages.get(0).getModuleId());
+		assertEquals(60, usages.get(0).getStartOffset());
+		assertEquals(68, usages.get(0).getEndOffset());
+	}
+
+	@Test
+	public void indexFileRoundTrip() throws IOException
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+
+		Map<String, byte[]> recordsByKey = new LinkedHashMap<>();
+		Map<String, IndexEntry> entriesByKey = new HashMap<>();
+
+		recordsByKey.put(KEY, DLSemanticIndex.encodeNode(createNode(cache)));
+		recordsByKey.put(REQUIRED_KEY, DLSemanticIndex.encodeNode(new DLSemanticCacheModule(cache, REQUIRED_KEY, new ModuleEntry(REQUIRED_KEY))));
+
+		long stamp = 1000;
+		for (String key : recordsByKey.keySet()) {
+			IndexEntry entry = new IndexEntry();
+			entry.stamp = stamp++;
+			entry.size = recordsByKey.get(key).length;
+			entriesByKey.put(key, entry);
+		}
+
+		Path indexPath = directory.resolve(DLSemanticIndex.DEFAULT_INDEX_NAME + DLSemanticIndex.INDEX_EXTENSION);
+		Path generationFile = DLSemanticIndex.createGenerationPath(indexPath, 1);
+		cache.index.writeIndexFile(generationFile, recordsByKey, entriesByKey);
+
+		IndexFile indexFile = cache.index.readIndexFile(generationFile);
+
+		assertEquals(recordsByKey.keySet(), indexFile.entriesByKey.keySet());
+
+		for (Map.Entry<String, byte[]> record : recordsByKey.entrySet()) {
+
+			IndexEntry entry = indexFile.entriesByKey.get(record.getKey());
+			assertEquals(entriesByKey.get(record.getKey()).stamp, entry.stamp);
+			assertEquals(entriesByKey.get(record.getKey()).size, entry.size);
+
+			ByteBuffer buffer = indexFile.getRecord(entry);
+			byte[] data = new byte[buffer.remaining()];
+			buffer.get(data);
+			assertArrayEquals(record.getValue(), data);
+		}
+
+		// The record decodes from the mapped file as well
+		DLSemanticCacheModule decoded = cache.index.decodeNode(KEY, indexFile.getRecord(indexFile.entriesByKey.get(KEY)));
+		assertEquals(getTypesByIdentifier(createNode(cache)).keySet(), getTypesByIdentifier(decoded).keySet());
+	}
+
+	@Test
+	public void otherVersionIsRejected() throws IOException
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+
+		Path generationFile = directory.resolve("version.1" + DLSemanticIndex.INDEX_EXTENSION);
+		cache.index.writeIndexFile(generationFile, new LinkedHashMap<>(), new HashMap<>());
+
+		// Header is magic, version and start of the records
+		try (FileChannel channel = FileChannel.open(generationFile, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(DLSemanticIndex.HEADER_SIZE);
+			channel.read(header);
+			header.flip();
+			assertEquals(DLSemanticIndex.MAGIC, header.getInt());
+			assertEquals(DLSemanticIndex.VERSION, header.getInt());
+		}
+
+		try (FileChannel channel = FileChannel.open(generationFile, StandardOpenOption.WRITE)) {
+			ByteBuffer version = ByteBuffer.allocate(Integer.BYTES);
+			version.putInt(DLSemanticIndex.VERSION + 1);
+			version.flip();
+			channel.write(version, Integer.BYTES);
+		}
+
+		assertThrows(IOException.class, () -> cache.index.readIndexFile(generationFile));
+	}
+
+	@Test
+	public void generationIsEncodedInFileName()
+	{
+		DLSemanticCache cache = new DLSemanticCache();
+		Path indexPath = directory.resolve("project-1a2b" + DLSemanticIndex.INDEX_EXTENSION);
+
+		Path generationFile = DLSemanticIndex.createGenerationPath(indexPath, 42);
+
+		assertEquals("project-1a2b.42" + DLSemanticIndex.INDEX_EXTENSION, generationFile.getFileName().toString());
+		assertEquals(42, cache.index.getGeneration(generationFile));
+		assertEquals(-1, cache.index.getGeneration(indexPath));
+		assertTrue(generationFile.startsWith(directory));
+	}
+}
@@ -0,0 +1,250 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import de.s42.dl.parser.DLLexer;
+import de.s42.dl.parser.DLParser;
+import de.s42.dl.parser.DLParser.DataContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the trees spliced by DLIncrementalParser with full reparses of the modified content.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLIncrementalParserTest
+{
+
+	protected static String loadResource(String name) throws IOException
+	{
+		try (InputStream in = DLIncrementalParserTest.class.getResourceAsStream("/de/s42/dl/netbeans/" + name)) {
+			assert in != null : "Missing test resource " + name;
+
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	protected static DataContext parse(String content)
+	{
+		DLParser parser = new DLParser(new CommonTokenStream(new DLLexer(CharStreams.fromString(content))));
+		DataContext data = parser.data();
+
+		assertEquals(0, parser.getNumberOfSyntaxErrors(), "Syntax errors in " + content);
+
+		return data;
+	}
+
+	/**
+	 * Parses the region like DLIncrementalParser.parseRegion but without the semantic analysis
+	 */
+	protected static DataContext parseRegion(String content, DLSourceEdit edit)
+	{
+		DLLexer lexer = new DLLexer(CharStreams.fromString(content.substring(edit.getRegionStart(), edit.getNewRegionEnd())));
+		lexer.setTokenFactory(new DLIncrementalParser.MovedTokenFactory(edit.getRegionStart()));
+		lexer.setLine(edit.getRegionStartLine());
+		lexer.setCharPositionInLine(edit.getRegionStartPosition());
+
+		DLParser parser = new DLParser(new CommonTokenStream(lexer));
+		DataContext data = parser.data();
+
+		assertEquals(0, parser.getNumberOfSyntaxErrors(), "Syntax errors in region " + edit);
+
+		return data;
+	}
+
+	/**
+	 * Describes rules and tokens with their positions - the EOF is skipped as spliced trees do not contain it
+	 */
+	protected static void describe(ParseTree tree, StringBuilder description)
+	{
+		if (tree instanceof TerminalNode) {
+
+			Token token = ((TerminalNode) tree).getSymbol();
+
+			if (token.getType() != Token.EOF) {
+				description
+					.append(token.getType()).append(':')
+					.append(token.getText()).append('@')
+					.append(token.getStartIndex()).append('-')
+					.append(token.getStopIndex()).append(',')
+					.append(token.getLine()).append(':')
+					.append(token.getCharPositionInLine()).append(' ');
+			}
+
+			return;
+		}
+
+		description.append('(').append(DLParser.ruleNames[((ParserRuleContext) tree).getRuleIndex()]).append(' ');
+		for (int i = 0; i < tree.getChildCount(); ++i) {
+			describe(tree.getChild(i), description);
+		}
+		description.append(") ");
+	}
+
+	protected static String describe(ParseTree tree)
+	{
+		StringBuilder description = new StringBuilder();
+		describe(tree, description);
+
+		return description.toString();
+	}
+
+	protected static DLIncrementalParser createParser(String content)
+	{
+		DLIncrementalParser parser = new DLIncrementalParser();
+		parser.moduleId = "test.project.dl";
+		parser.content = content;
+		parser.data = parse(content);
+
+		return parser;
+	}
+
+	protected static void assertSplicedMatchesFullParse(String oldContent, String newContent)
+	{
+		DLIncrementalParser parser = createParser(oldContent);
+
+		DLSourceEdit edit = parser.createEdit(newContent);
+		assertNotNull(edit, "Edit is not incremental");
+
+		DataContext spliced = parser.splice(edit, parseRegion(newContent, edit));
+		assertNotNull(spliced, "Splice failed for " + edit);
+
+		assertEquals(describe(parse(newContent)), describe(spliced));
+	}
+
+	protected static String replace(String content, String oldText, String newText)
+	{
+		int index = content.indexOf(oldText);
+
+		assert index >= 0 : "Missing " + oldText;
+
+		return content.substring(0, index) + newText + content.substring(index + oldText.length());
+	}
+
+	@Test
+	public void insertWithinStatement() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"\tString\t\tdescription @required;\n",
+			"\tString\t\tdescription @required;\n\tString\t\ttitle;\n"
+		));
+	}
+
+	@Test
+	public void insertStatementBetweenStatements() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"type Long42",
+			"type Extra {\n\tString name;\n}\n\ntype Long42"
+		));
+	}
+
+	@Test
+	public void insertWithinLine() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"display : \"Project\";",
+			"display : \"Another Project\";"
+		));
+	}
+
+	@Test
+	public void deleteWithinStatement() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"\tFolder test {\n\t\t\n\t\tString display : \"Test\";\n\t}\n",
+			""
+		));
+	}
+
+	@Test
+	public void deleteStatement() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"type Long42 @range(0, 42) extends Long;\n\n",
+			""
+		));
+	}
+
+	@Test
+	public void editAcrossStatements() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+
+		assertSplicedMatchesFullParse(content, replace(content,
+			"\tmyProp : 5;\n}\n\nFolder local {",
+			"\tmyProp : 6;\n}\n\nFolder remote {"
+		));
+	}
+
+	@Test
+	public void failedSpliceKeepsLastTree() throws IOException
+	{
+		String content = loadResource("test.project.dl");
+		DLIncrementalParser parser = createParser(content);
+		String description = describe(parser.data);
+
+		// A region starting within a statement does not fit to the statements of the last tree
+		List<ParserRuleContext> statements = DLIncrementalParser.getStatements(parser.data);
+		int start = DLIncrementalParser.getStartOffset(statements.get(statements.size() - 1)) + 1;
+		Token startToken = DLIncrementalParser.getStartToken(statements.get(statements.size() - 1));
+		DLSourceEdit edit = new DLSourceEdit(start, startToken.getLine(), startToken.getCharPositionInLine() + 1, start + 1, start + 1, startToken.getLine(), 0, 0);
+
+		assertNull(parser.splice(edit, parse(" ")));
+
+		assertEquals(description, describe(parser.data));
+
+		List<ParseTree> children = new ArrayList<>(DLIncrementalParser.getChildren(parser.data));
+		for (ParseTree child : children) {
+			assertSame(parser.data, child.getParent());
+		}
+	}
+}
@@ -0,0 +1,266 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
+import org.netbeans.api.lexer.TokenHierarchy;
+import org.netbeans.api.lexer.TokenSequence;
+import org.netbeans.spi.lexer.LanguageHierarchy;
+import org.netbeans.spi.lexer.Lexer;
+import org.netbeans.spi.lexer.LexerInput;
+import org.netbeans.spi.lexer.LexerRestartInfo;
+import org.netbeans.spi.lexer.TokenFactory;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Compares DLLexerInputCharStream against the CharStream of ANTLR for the same content.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLLexerInputCharStreamTest
+{
+
+	public final static int RANDOM_RUNS = 20;
+	public final static int MAX_TOKEN_LENGTH = 300;
+	public final static int MAX_LOOKAHEAD = 16;
+
+	protected static String loadResource(String name) throws IOException
+	{
+		try (InputStream in = DLLexerInputCharStreamTest.class.getResourceAsStream("/de/s42/dl/netbeans/" + name)) {
+			assert in != null : "Missing test resource " + name;
+
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Lexes the content through the token hierarchy and directly with the ANTLR lexer and compares the tokens
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = {"errors.dl", "test.project.dl", "test2.project.dl"})
+	public void lexedTokensMatchAntlr(String name) throws IOException
+	{
+		String content = loadResource(name);
+
+		de.s42.dl.parser.DLLexer antlrLexer = new de.s42.dl.parser.DLLexer(CharStreams.fromString(content));
+		antlrLexer.removeErrorListeners();
+
+		TokenHierarchy<String> hierarchy = TokenHierarchy.create(content, DLLanguageFactory.getLanguage());
+		TokenSequence<DLTokenId> tokens = hierarchy.tokenSequence(DLLanguageFactory.getLanguage());
+
+		while (tokens.moveNext()) {
+
+			org.antlr.v4.runtime.Token expected = antlrLexer.nextToken();
+
+			assertEquals(expected.getText(), tokens.token().text().toString(), "Token text at " + tokens.offset());
+			assertEquals(expected.getType(), DLLexer.getAntlrType(tokens.token()), "Token type at " + tokens.offset());
+		}
+
+		assertEquals(org.antlr.v4.runtime.Token.EOF, antlrLexer.nextToken().getType(), "Remaining tokens");
+	}
+
+	/**
+	 * Runs random LA, seek, getText, consume and markToken sequences on both streams
+	 */
+	@ParameterizedTest
+	@ValueSource(strings = {"errors.dl", "test.project.dl", "test2.project.dl"})
+	public void randomOperationsMatchAntlr(String name) throws IOException
+	{
+		String content = loadResource(name);
+
+		for (int run = 0; run < RANDOM_RUNS; ++run) {
+
+			List<String> failures = new ArrayList<>();
+			ScriptedLanguage language = new ScriptedLanguage(content, new Random(run), failures);
+
+			TokenHierarchy<String> hierarchy = TokenHierarchy.create(content, language.language());
+			TokenSequence<ScriptedTokenId> tokens = hierarchy.tokenSequence(language.language());
+
+			StringBuilder text = new StringBuilder();
+			while (tokens.moveNext()) {
+				text.append(tokens.token().text());
+			}
+
+			assertTrue(failures.isEmpty(), "Run " + run + ": " + failures);
+			assertEquals(content, text.toString(), "Run " + run + ": tokens do not cover the content");
+		}
+	}
+
+	protected enum ScriptedTokenId implements org.netbeans.api.lexer.TokenId
+	{
+		CHUNK;
+
+		@Override
+		public String primaryCategory()
+		{
+			return "chunk";
+		}
+	}
+
+	/**
+	 * A language which splits the content into chunks of random length and compares the stream with the reference on
+	 * the way
+	 */
+	protected static class ScriptedLanguage extends LanguageHierarchy<ScriptedTokenId>
+	{
+
+		protected final String content;
+		protected final Random random;
+		protected final List<String> failures;
+
+		protected ScriptedLanguage(String content, Random random, List<String> failures)
+		{
+			this.content = content;
+			this.random = random;
+			this.failures = failures;
+		}
+
+		@Override
+		protected Collection<ScriptedTokenId> createTokenIds()
+		{
+			return List.of(ScriptedTokenId.CHUNK);
+		}
+
+		@Override
+		protected Lexer<ScriptedTokenId> createLexer(LexerRestartInfo<ScriptedTokenId> info)
+		{
+			return new ScriptedLexer(info, content, random, failures);
+		}
+
+		@Override
+		protected String mimeType()
+		{
+			return "text/x-dl-scripted";
+		}
+	}
+
+	protected static class ScriptedLexer implements Lexer<ScriptedTokenId>
+	{
+
+		protected final TokenFactory<ScriptedTokenId> tokenFactory;
+		protected final LexerInput input;
+		protected final DLLexerInputCharStream stream;
+		protected final CharStream reference;
+		protected final int length;
+		protected final Random random;
+		protected final List<String> failures;
+		protected int tokenStart;
+
+		protected ScriptedLexer(LexerRestartInfo<ScriptedTokenId> info, String content, Random random, List<String> failures)
+		{
+			this.tokenFactory = info.tokenFactory();
+			this.input = info.input();
+			this.stream = new DLLexerInputCharStream(input);
+			this.reference = CharStreams.fromString(content);
+			this.length = content.length();
+			this.random = random;
+			this.failures = failures;
+			stream.markToken();
+		}
+
+		protected void check(boolean condition, String message)
+		{
+			if (!condition) {
+				failures.add(message + " at index " + reference.index());
+			}
+		}
+
+		@Override
+		public org.netbeans.api.lexer.Token<ScriptedTokenId> nextToken()
+		{
+			if (tokenStart >= length) {
+				check(stream.LA(1) == CharStream.EOF, "LA(1) is not EOF at the end");
+				stream.markToken();
+				return null;
+			}
+
+			int tokenEnd = Math.min(length, tokenStart + 1 + random.nextInt(MAX_TOKEN_LENGTH));
+
+			while (stream.index() < tokenEnd) {
+
+				check(stream.index() == reference.index(), "index differs");
+
+				// Look ahead, possibly beyond the end of the content
+				int lookahead = 1 + random.nextInt(MAX_LOOKAHEAD);
+				check(stream.LA(lookahead) == reference.LA(lookahead), "LA(" + lookahead + ") differs");
+
+				if (stream.index() > tokenStart) {
+					check(stream.LA(-1) == reference.LA(-1), "LA(-1) differs");
+				}
+
+				// Jump forth or back within the current token and return
+				int current = stream.index();
+				int target = tokenStart + random.nextInt(Math.min(length, current + MAX_LOOKAHEAD) - tokenStart + 1);
+				stream.seek(target);
+				reference.seek(target);
+				check(stream.LA(1) == reference.LA(1), "LA(1) after seek(" + target + ") differs");
+				stream.seek(current);
+				reference.seek(current);
+
+				Interval interval = Interval.of(tokenStart, tokenStart + random.nextInt(MAX_TOKEN_LENGTH));
+				check(stream.getText(interval).equals(reference.getText(interval)), "getText(" + interval + ") differs");
+
+				if (stream.index() < length) {
+					stream.consume();
+					reference.consume();
+				}
+			}
+
+			stream.seek(tokenEnd);
+			reference.seek(tokenEnd);
+			stream.markToken();
+
+			int tokenLength = tokenEnd - tokenStart;
+			check(input.readLength() == tokenLength, "read length " + input.readLength() + " differs from token length " + tokenLength);
+			tokenStart = tokenEnd;
+
+			return tokenFactory.createToken(ScriptedTokenId.CHUNK, tokenLength);
+		}
+
+		@Override
+		public Object state()
+		{
+			return null;
+		}
+
+		@Override
+		public void release()
+		{
+		}
+	}
+}
@@ -0,0 +1,80 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.netbeans.modules.parsing.api.Snapshot;
+
+/**
+ * Checks the cancel state DLParserResult shares with the results of required modules.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLParserResultTest
+{
+
+	@Test
+	public void checkCancelledThrowsOnceCancelled()
+	{
+		DLParserResult result = new DLParserResult((Snapshot) null);
+
+		assertFalse(result.isCancelled());
+		assertDoesNotThrow(result::checkCancelled);
+
+		result.cancel();
+
+		assertTrue(result.isCancelled());
+		assertThrows(DLParseCancelledException.class, result::checkCancelled);
+	}
+
+	@Test
+	public void requiredModulesShareTheCancelState()
+	{
+		DLParserResult result = new DLParserResult((Snapshot) null);
+		DLParserResult required = new DLParserResult(result);
+		DLParserResult nested = new DLParserResult(required);
+
+		result.cancel();
+
+		assertThrows(DLParseCancelledException.class, required::checkCancelled);
+		assertThrows(DLParseCancelledException.class, nested::checkCancelled);
+	}
+
+	@Test
+	public void cancellingRequiredModuleCancelsTheParse()
+	{
+		DLParserResult result = new DLParserResult((Snapshot) null);
+		DLParserResult required = new DLParserResult(result);
+
+		required.cancel();
+
+		assertTrue(result.isCancelled());
+	}
+}
@@ -0,0 +1,153 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.syntax;
+
+import static de.s42.dl.netbeans.DLDataObject.DL_MIME_TYPE;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCache;
+import de.s42.dl.netbeans.semantic.cache.DLSemanticCacheNode;
+import de.s42.dl.netbeans.semantic.model.ModuleEntry;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.netbeans.api.editor.mimelookup.MimeLookup;
+
+/**
+ * Checks when DLSnapshotFingerprint allows to reuse the last parse result.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLSnapshotFingerprintTest
+{
+
+	public final static String CONTENT = "type Fingerprinted;";
+
+	protected static DLSemanticCache getCache()
+	{
+		DLSemanticCache cache = MimeLookup.getLookup(DL_MIME_TYPE).lookup(DLSemanticCache.class);
+
+		assertNotNull(cache, "No semantic cache registered for " + DL_MIME_TYPE);
+
+		return cache;
+	}
+
+	protected static DLSemanticCacheNode publish(String key, String... referencedKeys)
+	{
+		DLSemanticCache cache = getCache();
+		DLSemanticCacheNode node = cache.createCacheNode(key, new ModuleEntry(key));
+
+		for (String referencedKey : referencedKeys) {
+			node.addNodeReference(referencedKey);
+		}
+
+		cache.setCacheNode(node);
+
+		return node;
+	}
+
+	protected static DLSnapshotFingerprint createFingerprint(String moduleId, String requiredModuleId)
+	{
+		publish(requiredModuleId);
+		publish(moduleId, requiredModuleId);
+
+		return DLSnapshotFingerprint.create(moduleId, CONTENT).orElseThrow();
+	}
+
+	@Test
+	public void unchangedSnapshotMatches()
+	{
+		String moduleId = "memory:fingerprint/unchanged.dl";
+		DLSnapshotFingerprint fingerprint = createFingerprint(moduleId, "memory:fingerprint/unchanged-required.dl");
+
+		// Compared by content not by instance
+		assertTrue(fingerprint.matches(moduleId, new String(CONTENT)));
+
+		assertFalse(fingerprint.matches(moduleId, CONTENT + " "));
+		assertFalse(fingerprint.matches(moduleId, "type Fingerprinter;"));
+		assertFalse(fingerprint.matches("memory:fingerprint/other.dl", CONTENT));
+	}
+
+	@Test
+	public void unrelatedChangesKeepMatching()
+	{
+		String moduleId = "memory:fingerprint/unrelated.dl";
+		DLSnapshotFingerprint fingerprint = createFingerprint(moduleId, "memory:fingerprint/unrelated-required.dl");
+
+		// Replacing a node changes the generation of the cache
+		long generation = getCache().getGeneration();
+		publish("memory:fingerprint/unrelated-other.dl");
+		publish("memory:fingerprint/unrelated-other.dl");
+		assertNotEquals(generation, getCache().getGeneration());
+
+		assertTrue(fingerprint.matches(moduleId, CONTENT));
+	}
+
+	@Test
+	public void changedRequiredModuleDoesNotMatch()
+	{
+		String moduleId = "memory:fingerprint/changed.dl";
+		String requiredModuleId = "memory:fingerprint/changed-required.dl";
+		DLSnapshotFingerprint fingerprint = createFingerprint(moduleId, requiredModuleId);
+
+		// I.e. modified in another editor
+		publish(requiredModuleId);
+
+		assertFalse(fingerprint.matches(moduleId, CONTENT));
+	}
+
+	@Test
+	public void removedRequiredModuleDoesNotMatch()
+	{
+		String moduleId = "memory:fingerprint/removed.dl";
+		String requiredModuleId = "memory:fingerprint/removed-required.dl";
+		DLSnapshotFingerprint fingerprint = createFingerprint(moduleId, requiredModuleId);
+
+		// I.e. changed on disk
+		getCache().removeCacheNode(requiredModuleId);
+
+		assertFalse(fingerprint.matches(moduleId, CONTENT));
+	}
+
+	@Test
+	public void removedNodeGetsRepublished()
+	{
+		String moduleId = "memory:fingerprint/republished.dl";
+		DLSnapshotFingerprint fingerprint = createFingerprint(moduleId, "memory:fingerprint/republished-required.dl");
+
+		getCache().removeCacheNode(moduleId);
+		fingerprint.republishCacheNode();
+
+		assertSame(fingerprint.getCacheNode(), getCache().peekCacheNode(moduleId).orElseThrow());
+	}
+
+	@Test
+	public void moduleWithoutNodeHasNoFingerprint()
+	{
+		assertTrue(DLSnapshotFingerprint.create("memory:fingerprint/missing.dl", CONTENT).isEmpty());
+	}
+}
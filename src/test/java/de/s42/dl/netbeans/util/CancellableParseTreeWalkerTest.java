@@ -0,0 +1,140 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import de.s42.dl.netbeans.syntax.DLParseCancelledException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that CancellableParseTreeWalker stops before the next rule once cancelled.
+ *
+ * @author Benjamin Schiller
+ */
+public class CancellableParseTreeWalkerTest
+{
+
+	public final static int CHILDREN = 5;
+
+	/**
+	 * Counts the entered rules and cancels after the given number of rules
+	 */
+	protected static class CancellingListener implements ParseTreeListener
+	{
+
+		protected final AtomicBoolean cancelled;
+		protected final int cancelAfter;
+		protected int entered;
+
+		protected CancellingListener(AtomicBoolean cancelled, int cancelAfter)
+		{
+			this.cancelled = cancelled;
+			this.cancelAfter = cancelAfter;
+		}
+
+		@Override
+		public void enterEveryRule(ParserRuleContext ctx)
+		{
+			entered++;
+
+			if (entered == cancelAfter) {
+				cancelled.set(true);
+			}
+		}
+
+		@Override
+		public void exitEveryRule(ParserRuleContext ctx)
+		{
+			// not needed
+		}
+
+		@Override
+		public void visitTerminal(TerminalNode node)
+		{
+			// not needed
+		}
+
+		@Override
+		public void visitErrorNode(ErrorNode node)
+		{
+			// not needed
+		}
+	}
+
+	protected static ParserRuleContext createTree()
+	{
+		ParserRuleContext root = new ParserRuleContext();
+
+		for (int i = 0; i < CHILDREN; ++i) {
+			root.addAnyChild(new ParserRuleContext(root, i));
+		}
+
+		return root;
+	}
+
+	@Test
+	public void walksAllRulesUnlessCancelled()
+	{
+		AtomicBoolean cancelled = new AtomicBoolean();
+		CancellingListener listener = new CancellingListener(cancelled, Integer.MAX_VALUE);
+
+		new CancellableParseTreeWalker(cancelled::get).walk(listener, createTree());
+
+		assertEquals(CHILDREN + 1, listener.entered);
+	}
+
+	@Test
+	public void stopsBeforeNextRuleOnceCancelled()
+	{
+		AtomicBoolean cancelled = new AtomicBoolean();
+		CancellingListener listener = new CancellingListener(cancelled, 3);
+
+		assertThrows(DLParseCancelledException.class, () -> {
+			new CancellableParseTreeWalker(cancelled::get).walk(listener, createTree());
+		});
+
+		assertEquals(3, listener.entered);
+	}
+
+	@Test
+	public void cancelledBeforeStartEntersNoRule()
+	{
+		AtomicBoolean cancelled = new AtomicBoolean(true);
+		CancellingListener listener = new CancellingListener(cancelled, Integer.MAX_VALUE);
+
+		assertThrows(DLParseCancelledException.class, () -> {
+			new CancellableParseTreeWalker(cancelled::get).walk(listener, createTree());
+		});
+
+		assertEquals(0, listener.entered);
+	}
+}
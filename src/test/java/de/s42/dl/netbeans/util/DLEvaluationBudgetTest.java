@@ -0,0 +1,162 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the limits and the cancel state of DLEvaluationBudget.
+ *
+ * @author Benjamin Schiller
+ */
+public class DLEvaluationBudgetTest
+{
+
+	public final static long TIME_LIMIT_MILLIS = 50;
+	public final static long ALLOCATION_LIMIT_BYTES = 1024 * 1024;
+	public final static long MAX_WAIT_MILLIS = 5000;
+
+	/**
+	 * Runs like an evaluation on the calling thread until the budget says stop or the max wait passed
+	 *
+	 * @param budget
+	 * @param allocate
+	 *
+	 * @return true if the budget stopped the evaluation
+	 */
+	protected static boolean evaluate(DLEvaluationBudget budget, boolean allocate)
+	{
+		long end = System.currentTimeMillis() + MAX_WAIT_MILLIS;
+		List<byte[]> garbage = new ArrayList<>();
+
+		while (System.currentTimeMillis() < end) {
+
+			if (budget.getAsBoolean()) {
+				return true;
+			}
+
+			if (allocate) {
+				garbage.add(new byte[64 * 1024]);
+				if (garbage.size() > 16) {
+					garbage.clear();
+				}
+			}
+
+			Thread.onSpinWait();
+		}
+
+		return false;
+	}
+
+	@Test
+	public void exceedsTimeLimit()
+	{
+		DLEvaluationBudget budget = new DLEvaluationBudget(() -> false, TIME_LIMIT_MILLIS, 0);
+
+		budget.start();
+
+		assertTrue(evaluate(budget, false));
+		assertTrue(budget.isExceeded());
+		assertTrue(budget.getExceededReason().contains(TIME_LIMIT_MILLIS + " ms"));
+		assertTrue(budget.getElapsedMillis() >= TIME_LIMIT_MILLIS);
+	}
+
+	@Test
+	public void exceedsAllocationLimit()
+	{
+		assumeTrue(DLEvaluationBudget.getAllocatedBytes(Thread.currentThread()) >= 0,
+			"JVM does not measure thread allocations");
+
+		DLEvaluationBudget budget = new DLEvaluationBudget(() -> false, 0, ALLOCATION_LIMIT_BYTES);
+
+		budget.start();
+
+		assertTrue(evaluate(budget, true));
+		assertTrue(budget.isExceeded());
+		assertTrue(budget.getExceededReason().contains("1 MB"));
+	}
+
+	@Test
+	public void neverExceedsWithoutLimits() throws InterruptedException
+	{
+		DLEvaluationBudget budget = new DLEvaluationBudget(() -> false, 0, 0);
+
+		budget.start();
+		Thread.sleep(DLEvaluationBudget.WATCHDOG_INTERVAL * 3);
+
+		assertTrue(budget.isStarted());
+		assertFalse(budget.isExceeded());
+		assertFalse(budget.getAsBoolean());
+	}
+
+	@Test
+	public void stopPreventsExceeding() throws InterruptedException
+	{
+		DLEvaluationBudget budget = new DLEvaluationBudget(() -> false, TIME_LIMIT_MILLIS, 0);
+
+		budget.start();
+		budget.stop();
+		Thread.sleep(DLEvaluationBudget.WATCHDOG_INTERVAL + TIME_LIMIT_MILLIS * 3);
+
+		assertFalse(budget.isExceeded());
+		assertFalse(budget.getAsBoolean());
+	}
+
+	@Test
+	public void abandonBeforeStartStopsEvaluation()
+	{
+		DLEvaluationBudget budget = new DLEvaluationBudget(() -> false, 0, 0);
+
+		budget.abandon();
+
+		assertFalse(budget.isStarted());
+		assertEquals(0, budget.getElapsedMillis());
+		assertTrue(budget.isAbandoned());
+		assertTrue(budget.getAsBoolean());
+		assertFalse(budget.isExceeded());
+	}
+
+	@Test
+	public void propagatesCancel()
+	{
+		AtomicBoolean cancelled = new AtomicBoolean();
+		DLEvaluationBudget budget = new DLEvaluationBudget(cancelled::get, 0, 0);
+
+		assertFalse(budget.getAsBoolean());
+
+		cancelled.set(true);
+
+		assertTrue(budget.getAsBoolean());
+		assertFalse(budget.isExceeded());
+	}
+}
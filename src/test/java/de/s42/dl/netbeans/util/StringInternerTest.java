@@ -0,0 +1,130 @@
+// <editor-fold desc="The MIT License" defaultstate="collapsed">
+/*
+ * The MIT License
+ * 
+ * Copyright 2022 Studio 42 GmbH ( https://www.s42m.de ).
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+//</editor-fold>
+package de.s42.dl.netbeans.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the StringInterner shares one instance per identifier, also under concurrent access, and that it does
+ * not keep strings alive.
+ *
+ * @author Benjamin Schiller
+ */
+public class StringInternerTest
+{
+
+	public final static int IDENTIFIERS = 100;
+	public final static int COPIES = 10000;
+	public final static int THREADS = 8;
+	public final static int GC_RUNS = 50;
+
+	@Test
+	public void equalStringsShareOneInstance()
+	{
+		String first = StringInterner.intern(new String("InternedType"));
+		String second = StringInterner.intern(new String("InternedType"));
+
+		assertSame(first, second);
+		assertNull(StringInterner.intern(null));
+	}
+
+	/**
+	 * Keeps many equal copies of few identifiers as the cached types do and counts the retained string instances
+	 */
+	@Test
+	public void copiesRetainOneInstancePerIdentifier()
+	{
+		List<String> interned = new ArrayList<>(COPIES);
+		for (int i = 0; i < COPIES; ++i) {
+			interned.add(StringInterner.intern(new String("RetainedType" + (i % IDENTIFIERS))));
+		}
+
+		Set<String> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+		instances.addAll(interned);
+
+		assertEquals(IDENTIFIERS, instances.size());
+	}
+
+	@Test
+	public void concurrentInternsShareOneInstance() throws Exception
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+		try {
+			List<Callable<List<String>>> tasks = new ArrayList<>();
+			for (int t = 0; t < THREADS; ++t) {
+				tasks.add(() -> {
+					List<String> result = new ArrayList<>(COPIES);
+					for (int i = 0; i < COPIES; ++i) {
+						result.add(StringInterner.intern(new String("ConcurrentType" + (i % IDENTIFIERS))));
+					}
+					return result;
+				});
+			}
+
+			Set<String> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (Future<List<String>> future : executor.invokeAll(tasks)) {
+				instances.addAll(future.get());
+			}
+
+			assertEquals(IDENTIFIERS, instances.size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void unusedStringsGetCollected() throws InterruptedException
+	{
+		WeakReference<String> reference = new WeakReference<>(StringInterner.intern(new String("CollectedType")));
+
+		for (int i = 0; i < GC_RUNS && reference.get() != null; ++i) {
+			System.gc();
+			Thread.sleep(10);
+		}
+
+		assertNull(reference.get());
+
+		// The cleared entry gets removed and the identifier can be pooled again
+		String again = new String("CollectedType");
+		assertSame(again, StringInterner.intern(again));
+		assertTrue(StringInterner.getPoolSize() > 0);
+	}
+}